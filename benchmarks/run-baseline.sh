@@ -0,0 +1,12 @@
+#!/bin/sh
+# Собрать плагин и бенчмарки, прогнать всё с -prof gc и сохранить результаты:
+#   baseline.json — для сравнения прогонов, baseline.txt — для чтения.
+# Дополнительные аргументы уходят в JMH, например: ./run-baseline.sh Checker -p players=1000
+set -e
+
+cd "$(dirname "$0")/.."
+mvn -B -q install
+
+cd benchmarks
+mvn -B -q package
+java -jar target/benchmarks.jar -prof gc -rf json -rff baseline.json "$@" | tee baseline.txt
@@ -0,0 +1,116 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.utils.BackupJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация бэкапа: дозапись пачки, сжатие журнала и чтение при старте.
+ * Замер включает fsync — на разных дисках цифры отличаются в разы.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BackupJournalBenchmark {
+
+    // Доля игроков, сменивших статус за один интервал записи
+    private static final int BATCH_DIVISOR = 10;
+
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private File folder;
+    private File snapshotFile;
+    private BackupJournal journal;
+    private List<BackupJournal.Record> live;
+    private List<BackupJournal.Record> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("smartafk-journal").toFile();
+
+        UUID worldUid = UUID.randomUUID();
+        live = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            live.add(BackupJournal.Record.put(new UUID(0x5AFEL, i), worldUid,
+                    i * 16 + 0.5, 64, 0.5, 90f, 0f, false, i % 2 == 0, 20.0, 20, 5.0f));
+        }
+        batch = new ArrayList<>(live.subList(0, Math.max(1, players / BATCH_DIVISOR)));
+
+        journal = new BackupJournal(new File(folder, "backup.journal"));
+        journal.open();
+
+        // Отдельный файл только для чтения
+        snapshotFile = new File(folder, "snapshot.journal");
+        BackupJournal snapshot = new BackupJournal(snapshotFile);
+        snapshot.open();
+        snapshot.compact(live);
+        snapshot.close();
+    }
+
+    /**
+     * Дозапись растит файл — между итерациями возвращаем его к живым записям
+     */
+    @Setup(Level.Iteration)
+    public void resetJournal() throws IOException {
+        journal.compact(live);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        journal.close();
+
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        journal.append(batch);
+        return journal.getRecordCount();
+    }
+
+    @Benchmark
+    public long compact() throws IOException {
+        journal.compact(live);
+        return journal.getRecordCount();
+    }
+
+    @Benchmark
+    public Map<UUID, BackupJournal.Record> open() throws IOException {
+        BackupJournal reader = new BackupJournal(snapshotFile);
+        try {
+            return reader.open();
+        } finally {
+            reader.close();
+        }
+    }
+}
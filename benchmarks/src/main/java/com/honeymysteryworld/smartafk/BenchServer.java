@@ -0,0 +1,216 @@
+package com.honeymysteryworld.smartafk;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Сервер-заглушка для бенчмарков: онлайн игроки, один мир и планировщик,
+ * который ничего не запускает. Таймеры плагина не тикают — время
+ * бенчмарки передают сами.
+ *
+ * Все вызовы считаются сделанными из главного потока.
+ */
+final class BenchServer {
+
+    private static final String BUKKIT_VERSION = "1.20.4-R0.1-SNAPSHOT";
+
+    private static BenchServer instance;
+
+    private final Logger logger = Logger.getLogger("BenchServer");
+    private final Map<UUID, Player> playersById = new ConcurrentHashMap<>();
+    private final Map<String, Player> playersByName = new ConcurrentHashMap<>();
+    private final List<Player> online = new ArrayList<>();
+    private final Collection<Player> onlineView = Collections.unmodifiableList(online);
+    private final Server server;
+    private final World world;
+
+    private BenchServer() {
+        BukkitTask task = Stubs.stub(BukkitTask.class);
+        BukkitScheduler scheduler = Stubs.stub(BukkitScheduler.class,
+                (method, args) -> method.getReturnType() == BukkitTask.class ? task : Stubs.DEFAULT);
+        PluginManager pluginManager = Stubs.stub(PluginManager.class);
+        ConsoleCommandSender console = Stubs.stub(ConsoleCommandSender.class);
+
+        UUID worldUid = new UUID(0L, 1L);
+        World[] self = new World[1];
+        this.world = Stubs.stub(World.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return "world";
+                case "getUID":
+                    return worldUid;
+                case "getMinHeight":
+                    return -64;
+                case "getMaxHeight":
+                    return 320;
+                case "getSpawnLocation":
+                    return new Location(self[0], 0.5, 64, 0.5);
+                default:
+                    return Stubs.DEFAULT;
+            }
+        });
+        self[0] = world;
+
+        this.server = Stubs.stub(Server.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return "BenchServer";
+                case "getVersion":
+                    return "bench (MC: 1.20.4)";
+                case "getBukkitVersion":
+                    return BUKKIT_VERSION;
+                case "getLogger":
+                    return logger;
+                case "isPrimaryThread":
+                    return true;
+                case "getOnlinePlayers":
+                    return onlineView;
+                case "getPlayer":
+                case "getPlayerExact":
+                    return args[0] instanceof UUID ? playersById.get(args[0]) : playersByName.get(args[0]);
+                case "getWorld":
+                    return args[0].equals("world") || args[0].equals(worldUid) ? world : null;
+                case "getWorlds":
+                    return Collections.singletonList(world);
+                case "getScheduler":
+                    return scheduler;
+                case "getPluginManager":
+                    return pluginManager;
+                case "getConsoleSender":
+                    return console;
+                default:
+                    return Stubs.DEFAULT;
+            }
+        });
+    }
+
+    /**
+     * Сервер один на JVM — Bukkit.setServer можно вызвать только раз
+     */
+    static synchronized BenchServer install() {
+        if (instance == null) {
+            instance = new BenchServer();
+            Bukkit.setServer(instance.server);
+        }
+        return instance;
+    }
+
+    /**
+     * Запустить SmartAFK поверх заглушки. settings накладываются на config.yml.
+     */
+    SmartAFK enablePlugin(File dataFolder, Map<String, Object> settings) throws Exception {
+        PluginDescriptionFile description;
+        try (InputStream in = SmartAFK.class.getClassLoader().getResourceAsStream("plugin.yml")) {
+            description = new PluginDescriptionFile(in);
+        }
+
+        SmartAFK plugin = new SmartAFK(new JavaPluginLoader(server), description, dataFolder,
+                new File(dataFolder, "SmartAFK.jar"));
+        for (Map.Entry<String, Object> entry : settings.entrySet()) {
+            plugin.getConfig().set(entry.getKey(), entry.getValue());
+        }
+
+        plugin.onEnable();
+        if (!plugin.isFullyLoaded()) {
+            throw new IllegalStateException("SmartAFK не запустился — подробности в логе выше");
+        }
+        return plugin;
+    }
+
+    /**
+     * Добавить онлайн игрока в мир world
+     */
+    Player addPlayer(int index) {
+        UUID uuid = new UUID(0x5AFEL, index);
+        String name = "player" + index;
+        Location[] location = {new Location(world, index * 16 + 0.5, 64, 0.5)};
+        boolean[] connected = {true};
+
+        Player player = Stubs.stub(Player.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                case "getDisplayName":
+                case "getPlayerListName":
+                    return name;
+                case "isOnline":
+                case "isValid":
+                    return connected[0];
+                case "getWorld":
+                    return location[0].getWorld();
+                case "getLocation":
+                    if (args.length == 0) return location[0].clone();
+                    Location target = (Location) args[0];
+                    if (target == null) return null;
+                    target.setWorld(location[0].getWorld());
+                    target.setX(location[0].getX());
+                    target.setY(location[0].getY());
+                    target.setZ(location[0].getZ());
+                    target.setYaw(location[0].getYaw());
+                    target.setPitch(location[0].getPitch());
+                    return target;
+                case "teleport":
+                    if (!(args[0] instanceof Location)) return false;
+                    location[0] = ((Location) args[0]).clone();
+                    return true;
+                case "getHealth":
+                case "getMaxHealth":
+                    return 20.0d;
+                case "getFoodLevel":
+                    return 20;
+                case "getSaturation":
+                    return 5.0f;
+                case "isCollidable":
+                    return true;
+                case "kickPlayer":
+                case "kick":
+                    connected[0] = false;
+                    return null;
+                case "getServer":
+                    return server;
+                default:
+                    return Stubs.DEFAULT;
+            }
+        });
+
+        playersById.put(uuid, player);
+        playersByName.put(name, player);
+        synchronized (online) {
+            online.add(player);
+        }
+        return player;
+    }
+
+    void clearPlayers() {
+        playersById.clear();
+        playersByName.clear();
+        synchronized (online) {
+            online.clear();
+        }
+    }
+
+    World getWorld() {
+        return world;
+    }
+}
@@ -0,0 +1,53 @@
+package com.honeymysteryworld.smartafk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * АФК чекер: ежесекундный проход и проверка игрока с наступившим дедлайном
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckerBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int bound) {
+            int index = next;
+            next = index + 1 < bound ? index + 1 : 0;
+            return index;
+        }
+    }
+
+    /**
+     * Проход чекера, когда ни у кого дедлайн не наступил — обычная секунда сервера
+     */
+    @Benchmark
+    public void idleSweep(PluginState state) {
+        state.afkManager.processDeadlines(state.now);
+    }
+
+    /**
+     * Проверка активного игрока: ещё не АФК, возвращает следующий дедлайн
+     */
+    @Benchmark
+    public long checkActivePlayer(PluginState state, Cursor cursor) {
+        int i = cursor.next(state.players);
+        return state.afkManager.checkPlayer(state.online[i], state.afkPlayers[i], state.now);
+    }
+}
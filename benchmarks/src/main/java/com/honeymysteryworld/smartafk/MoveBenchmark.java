@@ -0,0 +1,130 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.listeners.PlayerActivityListener;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оба обработчика движения PlayerActivityListener (onAfkMove, затем onMove,
+ * как их вызывает сервер) по кругу для всех онлайн игроков.
+ *
+ * afkPresent — на сервере есть АФК игрок, и onAfkMove уже не выходит
+ * сразу, а ищет игрока в карте.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoveBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Moves {
+
+        @Param({"false", "true"})
+        public boolean afkPresent;
+
+        PlayerActivityListener listener;
+        PlayerMoveEvent[] look;
+        PlayerMoveEvent[] forward;
+        PlayerMoveEvent[] back;
+
+        private PluginState state;
+        private int first;
+        private int span;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(PluginState state) {
+            this.state = state;
+            this.listener = new PlayerActivityListener(state.plugin, state.afkManager);
+
+            int count = state.players;
+            look = new PlayerMoveEvent[count];
+            forward = new PlayerMoveEvent[count];
+            back = new PlayerMoveEvent[count];
+
+            for (int i = 0; i < count; i++) {
+                Player player = state.online[i];
+                Location base = player.getLocation();
+                Location turned = base.clone();
+                turned.setYaw(base.getYaw() + 15);
+                Location ahead = base.clone().add(1, 0, 0);
+
+                look[i] = new PlayerMoveEvent(player, base, turned);
+                forward[i] = new PlayerMoveEvent(player, base, ahead);
+                back[i] = new PlayerMoveEvent(player, ahead, base);
+            }
+
+            // Игрок 0 в АФК и не двигается — события идут от остальных
+            if (afkPresent) {
+                state.afkManager.setAfk(state.online[0], true);
+            }
+            first = afkPresent ? 1 : 0;
+            span = Math.max(1, count - first);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (afkPresent) {
+                state.afkManager.setAfk(state.online[0], false);
+            }
+        }
+
+        /**
+         * Следующий шаг: первый круг — вперёд, второй — обратно
+         */
+        int next() {
+            int step = next;
+            next = step + 1 < span * 2 ? step + 1 : 0;
+            return step;
+        }
+
+        int player(int step) {
+            return first + step % span;
+        }
+
+        boolean returning(int step) {
+            return step >= span;
+        }
+    }
+
+    /**
+     * Поворот головы без смены блока
+     */
+    @Benchmark
+    public void look(Moves moves) {
+        int step = moves.next();
+        PlayerMoveEvent event = moves.look[moves.player(step)];
+        moves.listener.onAfkMove(event);
+        moves.listener.onMove(event);
+    }
+
+    /**
+     * Переход в соседний блок и обратно — засчитанная (или склеенная) активность
+     */
+    @Benchmark
+    public void blockChange(Moves moves) {
+        int step = moves.next();
+        int i = moves.player(step);
+        PlayerMoveEvent event = moves.returning(step) ? moves.back[i] : moves.forward[i];
+        moves.listener.onAfkMove(event);
+        moves.listener.onMove(event);
+    }
+}
@@ -0,0 +1,81 @@
+package com.honeymysteryworld.smartafk;
+
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Запущенный SmartAFK с players онлайн игроками на сервере-заглушке.
+ *
+ * АФК на месте и выключенный АФК мир: переходы не уходят в телепорты
+ * и загрузку чанков, которых у заглушки нет.
+ */
+@State(Scope.Benchmark)
+public class PluginState {
+
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    BenchServer server;
+    SmartAFK plugin;
+    AfkManager afkManager;
+    Player[] online;
+    AfkPlayer[] afkPlayers;
+
+    // Время проверок: все игроки активны, дедлайны ещё не наступили
+    long now;
+
+    private File dataFolder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = BenchServer.install();
+        dataFolder = Files.createTempDirectory("smartafk-bench").toFile();
+        plugin = server.enablePlugin(dataFolder, settings());
+        afkManager = plugin.getAfkManager();
+
+        online = new Player[players];
+        afkPlayers = new AfkPlayer[players];
+        for (int i = 0; i < players; i++) {
+            online[i] = server.addPlayer(i);
+            afkPlayers[i] = afkManager.getAfkPlayer(online[i]);
+        }
+
+        now = System.currentTimeMillis() + 1000L;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        plugin.onDisable();
+        server.clearPlayers();
+
+        try (Stream<Path> files = Files.walk(dataFolder.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static Map<String, Object> settings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("afk-mode", "in-place");
+        settings.put("afk-world.enabled", false);
+        settings.put("freeze-chunks", false);
+        settings.put("afk-view-distance.enabled", false);
+        settings.put("settings.hide-afk-players", false);
+        settings.put("settings.metrics", false);
+        settings.put("settings.debug", false);
+        return settings;
+    }
+}
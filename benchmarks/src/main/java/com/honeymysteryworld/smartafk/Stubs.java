@@ -0,0 +1,74 @@
+package com.honeymysteryworld.smartafk;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Лёгкие заглушки интерфейсов Bukkit на java.lang.reflect.Proxy.
+ *
+ * Отвечают только на методы, которые нужны горячим путям плагина.
+ * Остальные ничего не делают и возвращают ноль, false или null.
+ * Каждый вызов через прокси создаёт массив аргументов — в -prof gc это
+ * постоянная добавка, поэтому сравнивать стоит прогоны между собой.
+ */
+final class Stubs {
+
+    /** Ответ по умолчанию: ноль, false или null */
+    static final Object DEFAULT = new Object();
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    interface Answers {
+
+        Object answer(Method method, Object[] args);
+    }
+
+    private Stubs() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    static <T> T stub(Class<T> type, Answers answers) {
+        Object proxy = Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{type},
+                (self, method, args) -> {
+                    Object[] arguments = args != null ? args : NO_ARGS;
+
+                    if (method.getDeclaringClass() == Object.class) {
+                        return objectMethod(self, type, method, arguments);
+                    }
+
+                    Object result = answers.answer(method, arguments);
+                    return result != DEFAULT ? result : defaultValue(method.getReturnType());
+                });
+        return type.cast(proxy);
+    }
+
+    /**
+     * Заглушка, у которой все методы по умолчанию
+     */
+    static <T> T stub(Class<T> type) {
+        return stub(type, (method, args) -> DEFAULT);
+    }
+
+    private static Object objectMethod(Object self, Class<?> type, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return self == args[0];
+            case "hashCode":
+                return System.identityHashCode(self);
+            default:
+                return type.getSimpleName() + "Stub";
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        return 0d;
+    }
+}
@@ -0,0 +1,73 @@
+package com.honeymysteryworld.smartafk;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Переходы в АФК и обратно: сам AfkPlayer и полный путь через AfkManager
+ * (индекс, дедлайны, оповещения, бэкап)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransitionBenchmark {
+
+    @State(Scope.Thread)
+    public static class Single {
+
+        final AfkPlayer afkPlayer = new AfkPlayer(UUID.randomUUID());
+        final Location location = new Location(null, 10.5, 64, -3.5);
+        long tick;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int bound) {
+            int index = next;
+            next = index + 1 < bound ? index + 1 : 0;
+            return index;
+        }
+    }
+
+    /**
+     * Состояние записи игрока без побочных эффектов
+     */
+    @Benchmark
+    public boolean afkPlayerRoundTrip(Single single) {
+        AfkPlayer afkPlayer = single.afkPlayer;
+        afkPlayer.setReturnLocation(single.location);
+        afkPlayer.setAfk(true);
+        afkPlayer.setAfk(false);
+        afkPlayer.setReturnLocation(null);
+        afkPlayer.updateActivity(System.currentTimeMillis(), ++single.tick);
+        return afkPlayer.isAfk();
+    }
+
+    /**
+     * Уход в АФК и возврат через AfkManager, по очереди для всех игроков
+     */
+    @Benchmark
+    public boolean managerRoundTrip(PluginState state, Cursor cursor) {
+        Player player = state.online[cursor.next(state.players)];
+        state.afkManager.setAfk(player, true);
+        state.afkManager.setAfk(player, false);
+        return state.afkManager.hasAfkPlayers();
+    }
+}
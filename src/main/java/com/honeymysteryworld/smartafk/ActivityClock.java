@@ -0,0 +1,57 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.scheduler.TaskHandle;
+import com.honeymysteryworld.smartafk.scheduler.TaskScheduler;
+
+import java.time.Clock;
+
+/**
+ * Грубые часы с точностью до тика.
+ *
+ * Время обновляется один раз за тик, поэтому обработчики событий
+ * читают volatile поле вместо System.currentTimeMillis().
+ */
+public class ActivityClock {
+
+    private final Clock clock;
+    private volatile long now;
+    private volatile long tick;
+    private TaskHandle task;
+
+    public ActivityClock(Clock clock) {
+        this.clock = clock;
+        this.now = clock.millis();
+        this.tick = 0;
+    }
+
+    public void start(TaskScheduler scheduler) {
+        stop();
+        task = scheduler.runGlobalTimer(this::advance, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void advance() {
+        now = clock.millis();
+        tick = tick + 1; // пишет только поток тика
+    }
+
+    /**
+     * Время начала текущего тика (мс)
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Номер текущего тика с момента запуска
+     */
+    public long tick() {
+        return tick;
+    }
+}
@@ -0,0 +1,193 @@
+package com.honeymysteryworld.smartafk;
+
+/**
+ * Последние перемещения и клики игрока для AfkMachineDetector.
+ *
+ * Кольцевые буферы примитивов фиксированного размера: запись и проверки
+ * не создают объектов. Пишет только поток игрока.
+ */
+final class ActivityPattern {
+
+    static final int MOVE_SAMPLES = 64;
+    static final int INTERACT_SAMPLES = 32;
+
+    private static final int MOVE_MASK = MOVE_SAMPLES - 1;
+    private static final int INTERACT_MASK = INTERACT_SAMPLES - 1;
+
+    // Круг короче двух перемещений — не круг
+    private static final int MIN_LOOP_PERIOD = 2;
+    // Допуск по интервалу между перемещениями машины (тики)
+    private static final int MACHINE_INTERVAL_JITTER = 1;
+    // Интервалы длиннее не различаем — игрок всё равно давно стоял
+    private static final int MAX_INTERVAL = 1 << 16;
+
+    // Перемещения: смещение между засчитанными блоками и интервал в тиках
+    private final byte[] deltaX = new byte[MOVE_SAMPLES];
+    private final byte[] deltaY = new byte[MOVE_SAMPLES];
+    private final byte[] deltaZ = new byte[MOVE_SAMPLES];
+    private final int[] moveIntervals = new int[MOVE_SAMPLES];
+    private int moveHead;
+    private int moveCount;
+
+    private boolean hasLastMove;
+    private int lastX;
+    private int lastY;
+    private int lastZ;
+    private float lastYaw;
+    private float lastPitch;
+    private long lastMoveTick;
+    // Перемещений подряд без поворота камеры и в одном ритме: разброс
+    // интервалов серии копится на лету, поэтому длина серии не ограничена буфером
+    private int movesWithoutLook;
+    private int rhythmMin;
+    private int rhythmMax;
+
+    // Клики: интервалы в тиках
+    private final int[] interactIntervals = new int[INTERACT_SAMPLES];
+    private int interactHead;
+    private int interactCount;
+    private long lastInteractTick = Long.MIN_VALUE;
+
+    // Причины из AfkMachineDetector, выставленные последней проверкой
+    int flags;
+
+    /**
+     * Засчитанное перемещение в новый блок
+     */
+    void recordMove(int x, int y, int z, float yaw, float pitch, long tick) {
+        if (!hasLastMove) {
+            hasLastMove = true;
+            remember(x, y, z, yaw, pitch, tick);
+            return;
+        }
+
+        int interval = (int) Math.min(tick - lastMoveTick, MAX_INTERVAL);
+
+        if (yaw != lastYaw || pitch != lastPitch) {
+            movesWithoutLook = 0;
+        } else if (movesWithoutLook == 0
+                || Math.max(rhythmMax, interval) - Math.min(rhythmMin, interval) > MACHINE_INTERVAL_JITTER) {
+            // Ритм сбился — серия начинается заново с этого перемещения
+            movesWithoutLook = 1;
+            rhythmMin = interval;
+            rhythmMax = interval;
+        } else {
+            movesWithoutLook++;
+            rhythmMin = Math.min(rhythmMin, interval);
+            rhythmMax = Math.max(rhythmMax, interval);
+        }
+
+        deltaX[moveHead] = clampDelta(x - lastX);
+        deltaY[moveHead] = clampDelta(y - lastY);
+        deltaZ[moveHead] = clampDelta(z - lastZ);
+        moveIntervals[moveHead] = interval;
+        moveHead = (moveHead + 1) & MOVE_MASK;
+        if (moveCount < MOVE_SAMPLES) moveCount++;
+
+        remember(x, y, z, yaw, pitch, tick);
+    }
+
+    private void remember(int x, int y, int z, float yaw, float pitch, long tick) {
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        lastYaw = yaw;
+        lastPitch = pitch;
+        lastMoveTick = tick;
+    }
+
+    private static byte clampDelta(int delta) {
+        return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, delta));
+    }
+
+    /**
+     * Игрок повернул камеру — перемещения до этого больше не считаются машиной
+     */
+    void resetMoves() {
+        moveCount = 0;
+        movesWithoutLook = 0;
+        hasLastMove = false;
+    }
+
+    /**
+     * Клик или нажимная плита
+     */
+    void recordInteract(long tick) {
+        // Оба события одного клика (две руки) приходят в одном тике
+        if (tick == lastInteractTick) return;
+
+        if (lastInteractTick != Long.MIN_VALUE) {
+            interactIntervals[interactHead] = (int) Math.min(tick - lastInteractTick, MAX_INTERVAL);
+            interactHead = (interactHead + 1) & INTERACT_MASK;
+            if (interactCount < INTERACT_SAMPLES) interactCount++;
+        }
+        lastInteractTick = tick;
+    }
+
+    /**
+     * Последние moves перемещений подряд без единого поворота камеры
+     * и в машинном ритме: интервалы всей серии почти одинаковые
+     */
+    boolean isStillLook(int moves) {
+        return movesWithoutLook >= moves;
+    }
+
+    /**
+     * Перемещения повторяются по кругу: последовательность смещений
+     * с периодом, который возвращает игрока в тот же блок, и теми же интервалами.
+     * Проверяется только полное окно — не меньше двух оборотов.
+     */
+    boolean isLoop() {
+        if (moveCount < MOVE_SAMPLES) return false;
+
+        // Буфер полон: moveHead указывает на самое старое перемещение
+        for (int period = MIN_LOOP_PERIOD; period <= MOVE_SAMPLES / 2; period++) {
+            if (repeats(period)) {
+                // Наименьший период: если он не замыкается, кратные тоже
+                return closes(period);
+            }
+        }
+        return false;
+    }
+
+    private boolean repeats(int period) {
+        for (int i = 0; i + period < MOVE_SAMPLES; i++) {
+            int a = (moveHead + i) & MOVE_MASK;
+            int b = (moveHead + i + period) & MOVE_MASK;
+            if (deltaX[a] != deltaX[b] || deltaY[a] != deltaY[b] || deltaZ[a] != deltaZ[b]
+                    || Math.abs(moveIntervals[a] - moveIntervals[b]) > MACHINE_INTERVAL_JITTER) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean closes(int period) {
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        for (int i = 0; i < period; i++) {
+            int index = (moveHead + i) & MOVE_MASK;
+            x += deltaX[index];
+            y += deltaY[index];
+            z += deltaZ[index];
+        }
+        return x == 0 && y == 0 && z == 0;
+    }
+
+    /**
+     * Последние samples интервалов между кликами отличаются не больше чем на jitter тиков
+     */
+    boolean isRegularInteract(int samples, int jitter) {
+        if (interactCount < samples) return false;
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 1; i <= samples; i++) {
+            int interval = interactIntervals[(interactHead - i) & INTERACT_MASK];
+            if (interval < min) min = interval;
+            if (interval > max) max = interval;
+        }
+        return max - min <= jitter;
+    }
+}
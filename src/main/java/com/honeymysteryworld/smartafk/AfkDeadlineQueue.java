@@ -0,0 +1,91 @@
+package com.honeymysteryworld.smartafk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Очередь дедлайнов игроков: переход в АФК, предупреждения о кике, кик.
+ *
+ * Чекер забирает только тех, чей дедлайн уже наступил, поэтому стоимость
+ * проверки зависит от количества переходов, а не от онлайна.
+ *
+ * Активность игрока очередь не трогает: updateActivity лишь сдвигает
+ * lastActivity, а запись при срабатывании пересчитывается и переставляется.
+ * Дедлайн в очереди никогда не бывает позже реального события.
+ */
+public class AfkDeadlineQueue {
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+    /**
+     * Запланировать проверку игрока. Если уже запланирована более ранняя — ничего не делаем.
+     */
+    public synchronized void schedule(AfkPlayer afkPlayer, long deadline) {
+        if (afkPlayer == null || deadline >= afkPlayer.getScheduledDeadline()) return;
+
+        // Старая запись станет устаревшей и будет пропущена при извлечении
+        afkPlayer.setScheduledDeadline(deadline);
+        queue.add(new Entry(afkPlayer, deadline));
+    }
+
+    /**
+     * Снять с очереди всех игроков с наступившим дедлайном
+     */
+    public synchronized List<AfkPlayer> pollExpired(long now) {
+        List<AfkPlayer> due = null;
+
+        while (!queue.isEmpty() && queue.peek().deadline <= now) {
+            Entry entry = queue.poll();
+
+            // Устаревшая запись — игрока уже переставили или удалили
+            if (entry.afkPlayer.getScheduledDeadline() != entry.deadline) continue;
+
+            entry.afkPlayer.setScheduledDeadline(AfkPlayer.NO_DEADLINE);
+
+            if (due == null) {
+                due = new ArrayList<>();
+            }
+            due.add(entry.afkPlayer);
+        }
+
+        return due != null ? due : Collections.<AfkPlayer>emptyList();
+    }
+
+    /**
+     * Убрать игрока из очереди (запись станет устаревшей)
+     */
+    public synchronized void cancel(AfkPlayer afkPlayer) {
+        if (afkPlayer != null) {
+            afkPlayer.setScheduledDeadline(AfkPlayer.NO_DEADLINE);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : queue) {
+            entry.afkPlayer.setScheduledDeadline(AfkPlayer.NO_DEADLINE);
+        }
+        queue.clear();
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final AfkPlayer afkPlayer;
+        private final long deadline;
+
+        private Entry(AfkPlayer afkPlayer, long deadline) {
+            this.afkPlayer = afkPlayer;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.honeymysteryworld.smartafk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Индекс АФК игроков, который обновляется только в setAfk и при выходе.
+ *
+ * Хранит АФК игроков упорядоченно по началу АФК и счётчики по мирам,
+ * в которых игроки ушли в АФК. Чтение (количество, список, счётчик мира)
+ * ничего не создаёт и не пишет — его можно дёргать хоть каждый тик.
+ */
+public class AfkIndex {
+
+    private final ConcurrentSkipListSet<Entry> ordered = new ConcurrentSkipListSet<>();
+    private final Map<UUID, Entry> byPlayer = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> perWorld = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Игрок ушёл в АФК (afkStartTime уже выставлен)
+     */
+    public synchronized void add(AfkPlayer afkPlayer, String name, String worldName) {
+        if (byPlayer.containsKey(afkPlayer.getUuid())) return;
+
+        Entry entry = new Entry(afkPlayer, name, worldName, afkPlayer.getAfkStartTime());
+        byPlayer.put(afkPlayer.getUuid(), entry);
+        ordered.add(entry);
+        perWorld.computeIfAbsent(worldName, key -> new AtomicInteger()).incrementAndGet();
+        size.incrementAndGet();
+    }
+
+    /**
+     * Игрок вернулся или вышел. Повторный вызов ничего не делает.
+     */
+    public synchronized void remove(AfkPlayer afkPlayer) {
+        if (afkPlayer == null) return;
+
+        Entry entry = byPlayer.remove(afkPlayer.getUuid());
+        if (entry == null) return;
+
+        ordered.remove(entry);
+        AtomicInteger counter = perWorld.get(entry.worldName);
+        if (counter != null) {
+            counter.decrementAndGet();
+        }
+        size.decrementAndGet();
+    }
+
+    public synchronized void clear() {
+        byPlayer.clear();
+        ordered.clear();
+        perWorld.clear();
+        size.set(0);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Сколько игроков ушли в АФК из этого мира
+     */
+    public int count(String worldName) {
+        AtomicInteger counter = perWorld.get(worldName);
+        return counter != null ? counter.get() : 0;
+    }
+
+    public boolean contains(UUID uuid) {
+        return byPlayer.containsKey(uuid);
+    }
+
+    /**
+     * Первые limit игроков, начиная с самых долгих АФК
+     */
+    public List<Entry> list(int limit) {
+        if (limit <= 0 || isEmpty()) return Collections.emptyList();
+
+        List<Entry> result = new ArrayList<>(Math.min(limit, size()));
+        for (Entry entry : ordered) {
+            if (result.size() >= limit) break;
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public static final class Entry implements Comparable<Entry> {
+
+        private final AfkPlayer afkPlayer;
+        private final String name;
+        private final String worldName;
+        private final long afkStartTime;
+
+        private Entry(AfkPlayer afkPlayer, String name, String worldName, long afkStartTime) {
+            this.afkPlayer = afkPlayer;
+            this.name = name;
+            this.worldName = worldName;
+            this.afkStartTime = afkStartTime;
+        }
+
+        public AfkPlayer getAfkPlayer() {
+            return afkPlayer;
+        }
+
+        public UUID getUuid() {
+            return afkPlayer.getUuid();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getWorldName() {
+            return worldName;
+        }
+
+        public long getAfkStartTime() {
+            return afkStartTime;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(afkStartTime, other.afkStartTime);
+            return byTime != 0 ? byTime : getUuid().compareTo(other.getUuid());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.utils.Logger;
+import org.bukkit.entity.Player;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Распознавание АФК-машин (detection.anti-afk-machine).
+ *
+ * Водяной поток, вагонетка по кругу или автокликер дают «активность»,
+ * которая не даёт уйти в АФК. Детектор копит в ActivityPattern игрока
+ * смещения, повороты камеры и интервалы кликов и не засчитывает активность,
+ * пока она выглядит машинной: много перемещений в одном ритме без поворота
+ * камеры, перемещения по замкнутому кругу с тем же ритмом, клики с одним
+ * интервалом. Полёт на элитрах и транспорт правилу «без поворота камеры»
+ * не подлежат — там его соблюдают и живые игроки; круг ловится и в них.
+ * Любое человеческое действие (поворот камеры, сбитый ритм) снимает отметку.
+ *
+ * Вызывается из обработчиков событий в потоке игрока — без аллокаций.
+ */
+public class AfkMachineDetector {
+
+    private static final int STILL_LOOK = 1;
+    private static final int LOOP = 1 << 1;
+    private static final int CLICKER = 1 << 2;
+    private static final int MOVEMENT = STILL_LOOK | LOOP;
+
+    private final SmartAFK plugin;
+    private final Logger logger;
+    private final ActivityClock clock;
+
+    // Сколько активности не засчитано как машинной
+    private final LongAdder ignored = new LongAdder();
+
+    private volatile boolean enabled;
+    private volatile int stillLookMoves;
+    private volatile boolean loopDetection;
+    private volatile int clickerSamples;
+    private volatile int clickerJitter;
+
+    public AfkMachineDetector(SmartAFK plugin, Logger logger, ActivityClock clock) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.clock = clock;
+        reload();
+    }
+
+    public void reload() {
+        enabled = plugin.getConfig().getBoolean("detection.anti-afk-machine.enabled", true);
+        stillLookMoves = plugin.getConfig().getInt("detection.anti-afk-machine.still-look-moves", 200);
+        loopDetection = plugin.getConfig().getBoolean("detection.anti-afk-machine.loop-detection", true);
+        clickerSamples = Math.min(ActivityPattern.INTERACT_SAMPLES,
+                plugin.getConfig().getInt("detection.anti-afk-machine.clicker-samples", 24));
+        clickerJitter = plugin.getConfig().getInt("detection.anti-afk-machine.clicker-jitter-ticks", 1);
+    }
+
+    /**
+     * Игрок не в АФК перешёл в новый блок
+     *
+     * @return true — засчитать как активность
+     */
+    public boolean acceptMove(Player player, AfkPlayer afkPlayer, int x, int y, int z, float yaw, float pitch) {
+        if (!enabled) return true;
+
+        ActivityPattern pattern = afkPlayer.getActivityPattern();
+        pattern.recordMove(x, y, z, yaw, pitch, clock.tick());
+
+        int flags = 0;
+        if (pattern.isStillLook(stillLookMoves) && !player.isGliding() && !player.isInsideVehicle()) {
+            flags = STILL_LOOK;
+        } else if (loopDetection && pattern.isLoop()) {
+            flags = LOOP;
+        }
+
+        return update(player, pattern, MOVEMENT, flags);
+    }
+
+    /**
+     * АФК игрока сдвинуло с места. Пока перемещения отмечены как машинные,
+     * из АФК выводит только поворот камеры.
+     *
+     * @return true — вывести из АФК
+     */
+    public boolean acceptAfkMove(AfkPlayer afkPlayer, boolean lookChanged) {
+        if (!enabled) return true;
+
+        ActivityPattern pattern = afkPlayer.peekActivityPattern();
+        if (pattern == null || (pattern.flags & MOVEMENT) == 0) return true;
+
+        if (lookChanged) {
+            pattern.resetMoves();
+            pattern.flags &= ~MOVEMENT;
+            return true;
+        }
+
+        ignored.increment();
+        return false;
+    }
+
+    /**
+     * Клик или взаимодействие с сущностью
+     *
+     * @return true — засчитать как активность
+     */
+    public boolean acceptInteract(Player player, AfkPlayer afkPlayer) {
+        if (!enabled) return true;
+
+        ActivityPattern pattern = afkPlayer.getActivityPattern();
+        pattern.recordInteract(clock.tick());
+
+        int flags = pattern.isRegularInteract(clickerSamples, clickerJitter) ? CLICKER : 0;
+        return update(player, pattern, CLICKER, flags);
+    }
+
+    private boolean update(Player player, ActivityPattern pattern, int mask, int flags) {
+        int previous = pattern.flags & mask;
+        pattern.flags = (pattern.flags & ~mask) | flags;
+
+        if (flags == 0) return true;
+
+        if (previous == 0) {
+            // Только при смене отметки — строка собирается редко
+            logger.debug("Активность " + player.getName() + " похожа на АФК-машину (" + describe(flags) + ") — не засчитывается");
+        }
+        ignored.increment();
+        return false;
+    }
+
+    private static String describe(int flags) {
+        if ((flags & STILL_LOOK) != 0) return "ровное движение без поворота камеры";
+        if ((flags & LOOP) != 0) return "движение по кругу";
+        return "клики с одним интервалом";
+    }
+
+    /**
+     * Сколько событий активности не засчитано как машинных
+     */
+    public long getIgnoredActivity() {
+        return ignored.sum();
+    }
+}
@@ -1,80 +1,132 @@
 package com.honeymysteryworld.smartafk;
 
+import com.honeymysteryworld.smartafk.network.NetworkReplicator;
+import com.honeymysteryworld.smartafk.profiler.Profiler;
+import com.honeymysteryworld.smartafk.scheduler.TaskHandle;
+import com.honeymysteryworld.smartafk.scheduler.TaskScheduler;
+import com.honeymysteryworld.smartafk.utils.AnalyticsStore;
 import com.honeymysteryworld.smartafk.utils.BackupManager;
 import com.honeymysteryworld.smartafk.utils.Logger;
 import org.bukkit.*;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.persistence.PersistentDataType;
 
+import java.time.Clock;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class AfkManager {
 
+    // Секунды до кика, на которых отправляем предупреждение (по убыванию)
+    private static final long[] KICK_WARNINGS = {120, 90, 60, 30, 10, 5};
+
+    // Как часто перепроверять право обхода кика у АФК игрока (кэш прав сбрасывается)
+    private static final long BYPASS_RECHECK_INTERVAL = 60_000L;
+
+    // Как скоро повторить уход в АФК, отложенный до конца возврата на место
+    private static final long RETURN_RETRY_INTERVAL = 1_000L;
+
     private final SmartAFK plugin;
     private final Logger logger;
     private final BackupManager backupManager;
+    private final TaskScheduler scheduler;
+    private final Messages messages;
+    private final BroadcastDigest broadcasts;
+    private final NamespacedKey broadcastsMutedKey;
+    private final DistanceLimiter distanceLimiter;
+    private final AfkWorldManager worldManager;
+    private final AfkVisibility visibility;
+    private final AfkMachineDetector machineDetector;
+    private final NetworkReplicator network;
+    private final AnalyticsStore analytics;
+    private final Profiler profiler;
     private final Map<UUID, AfkPlayer> players;
-    private BukkitTask checkerTask;
-    private World afkWorld; // Кэшируем мир
+    private final AfkDeadlineQueue deadlines = new AfkDeadlineQueue();
+    private final AfkIndex afkIndex = new AfkIndex();
+    // Источник времени для таймаутов (в тестах — ручные часы)
+    private final Clock time;
+    private final ActivityClock clock;
+
+    // Счётчики активности: засчитано / склеено с уже отмеченной
+    private final LongAdder activityUpdates = new LongAdder();
+    private final LongAdder coalescedUpdates = new LongAdder();
+    // Сколько игроков чекер взял из очереди дедлайнов
+    private final LongAdder checkedPlayers = new LongAdder();
+    private TaskHandle checkerTask;
 
     // Кэш настроек
     private int afkTimeout;
     private int kickTimeout;
     private boolean afkWorldEnabled;
-    private boolean freezeChunks;
-    private String afkWorldName;
-    private double afkSpawnX;
-    private double afkSpawnY;
-    private double afkSpawnZ;
-    private String kickMessage;
-    private String kickWarningMessage;
-
-    public AfkManager(SmartAFK plugin, Logger logger, BackupManager backupManager) {
+    private boolean inPlaceMode;
+    private int activityDebounceTicks;
+
+    public AfkManager(SmartAFK plugin, Logger logger, BackupManager backupManager, TaskScheduler scheduler,
+                      Messages messages) {
         this.plugin = plugin;
         this.logger = logger;
         this.backupManager = backupManager;
+        this.scheduler = scheduler;
+        this.messages = messages;
+        this.profiler = plugin.getProfiler();
+        this.time = plugin.getClock();
+        this.clock = new ActivityClock(time);
         this.players = new ConcurrentHashMap<>();
+        this.broadcasts = new BroadcastDigest(plugin, this, messages, time);
+        this.distanceLimiter = new DistanceLimiter(plugin, logger, scheduler);
+        this.worldManager = new AfkWorldManager(plugin, logger, scheduler);
+        this.visibility = new AfkVisibility(plugin, scheduler, afkIndex);
+        this.machineDetector = new AfkMachineDetector(plugin, logger, clock);
+        this.network = new NetworkReplicator(plugin, logger, afkIndex, time);
+        this.analytics = new AnalyticsStore(plugin, logger, time);
+        this.broadcastsMutedKey = VersionUtil.hasPersistentData() ? new NamespacedKey(plugin, "broadcasts-muted") : null;
+        // Здесь же запускается АФК-мир, если включён
         reloadSettings();
 
-        // === FIX #2: Создаём мир при старте, а не при первом АФК ===
-        if (afkWorldEnabled) {
-            initAfkWorld();
-        }
-
+        clock.start(scheduler);
+        broadcasts.start(scheduler);
         startAfkChecker();
     }
 
     public void reloadSettings() {
         afkTimeout = plugin.getConfig().getInt("afk-timeout", 300) * 1000;
         kickTimeout = plugin.getConfig().getInt("kick-timeout", 1800) * 1000;
+        activityDebounceTicks = plugin.getConfig().getInt("detection.debounce-ticks", 20);
+        boolean wasWorldMode = afkWorldEnabled && !inPlaceMode;
         afkWorldEnabled = plugin.getConfig().getBoolean("afk-world.enabled", true);
-        freezeChunks = plugin.getConfig().getBoolean("freeze-chunks", true);
-        afkWorldName = plugin.getConfig().getString("afk-world.world-name", "world_afk");
-        afkSpawnX = plugin.getConfig().getDouble("afk-world.spawn-location.x", 0.5);
-        afkSpawnY = plugin.getConfig().getDouble("afk-world.spawn-location.y", 100);
-        afkSpawnZ = plugin.getConfig().getDouble("afk-world.spawn-location.z", 0.5);
-        kickMessage = plugin.getConfig().getString("kick-message", "&cВы были кикнуты за долгий АФК");
-        kickWarningMessage = plugin.getConfig().getString("messages.afk-kick-warning", "&cКик через {time} секунд!");
+        inPlaceMode = "in-place".equalsIgnoreCase(plugin.getConfig().getString("afk-mode", "world"));
+
+        // Таймауты могли уменьшиться — переставляем дедлайны
+        long now = time.millis();
+        for (AfkPlayer afkPlayer : players.values()) {
+            deadlines.schedule(afkPlayer, computeDeadline(afkPlayer, now));
+            // Права могли поменять вместе с конфигом
+            afkPlayer.setPermissionsValid(false);
+        }
 
-        logger.debug("Настройки перезагружены");
-    }
+        broadcasts.reload();
+        distanceLimiter.reload();
+        worldManager.reload();
+
+        // Мир прогревается после старта и загружается по требованию;
+        // при переключении режима через reload запускаем или снимаем его таймер
+        boolean worldMode = afkWorldEnabled && !inPlaceMode;
+        if (worldMode && !wasWorldMode) {
+            worldManager.start();
+        } else if (!worldMode && wasWorldMode) {
+            worldManager.shutdown();
+        }
 
-    /**
-     * FIX #2: Инициализация АФК мира при старте плагина
-     */
-    private void initAfkWorld() {
-        afkWorld = Bukkit.getWorld(afkWorldName);
+        visibility.reload();
+        machineDetector.reload();
+        network.reload();
+        analytics.reload();
 
-        if (afkWorld == null) {
-            logger.info("Создаю АФК-мир при старте: " + afkWorldName);
-            afkWorld = createAfkWorld();
-        } else {
-            logger.info("АФК-мир загружен: " + afkWorldName);
-        }
+        logger.debug("Настройки перезагружены");
     }
 
     public void shutdown() {
@@ -82,6 +134,15 @@ public class AfkManager {
             checkerTask.cancel();
             checkerTask = null;
         }
+        clock.stop();
+        worldManager.shutdown();
+        broadcasts.stop();
+        // Другие серверы сразу забывают наших АФК игроков
+        network.shutdown();
+
+        // Сессии АФК закрываются выключением — индекс при этом не меняется
+        long now = time.millis();
+        int stillAfk = afkIndex.size();
 
         for (Player player : Bukkit.getOnlinePlayers()) {
             try {
@@ -89,7 +150,11 @@ public class AfkManager {
                 if (afkPlayer != null && afkPlayer.isAfk()) {
                     // === FIX #7: Сбрасываем имя в табе ===
                     player.setPlayerListName(player.getName());
-                    returnFromAfk(player, afkPlayer);
+                    distanceLimiter.restoreNow(player, afkPlayer);
+                    visibility.show(player, afkPlayer);
+                    // Сервер выключается — асинхронные задачи могут уже не выполниться
+                    returnFromAfkNow(player, afkPlayer);
+                    analytics.recordEnd(afkPlayer.getUuid(), afkPlayer.getAfkStartTime(), now, --stillAfk);
                     logger.debug("Возвращён игрок: " + player.getName());
                 }
             } catch (Exception e) {
@@ -97,18 +162,85 @@ public class AfkManager {
             }
         }
 
+        // Дописываем историю после закрытия сессий
+        analytics.shutdown();
+
+        deadlines.clear();
         players.clear();
+        afkIndex.clear();
         logger.debug("AfkManager остановлен");
     }
 
     public AfkPlayer getAfkPlayer(Player player) {
         if (player == null) return null;
-        return players.computeIfAbsent(player.getUniqueId(), AfkPlayer::new);
+        return players.computeIfAbsent(player.getUniqueId(), this::createAfkPlayer);
+    }
+
+    /**
+     * Запись игрока без создания — для горячих путей
+     */
+    public AfkPlayer peekAfkPlayer(Player player) {
+        return player != null ? players.get(player.getUniqueId()) : null;
+    }
+
+    /**
+     * Есть ли сейчас хоть один АФК игрок
+     */
+    public boolean hasAfkPlayers() {
+        return !afkIndex.isEmpty();
+    }
+
+    private AfkPlayer createAfkPlayer(UUID uuid) {
+        AfkPlayer afkPlayer = new AfkPlayer(uuid, time);
+        deadlines.schedule(afkPlayer, computeDeadline(afkPlayer, time.millis()));
+        return afkPlayer;
+    }
+
+    /**
+     * Вызывается при входе игрока — запись могла появиться из бэкапа без дедлайна
+     *
+     * @return true — начат возврат из АФК мира по бэкапу (телепорт асинхронный)
+     */
+    public boolean handlePlayerJoin(Player player) {
+        AfkPlayer afkPlayer = getAfkPlayer(player);
+        if (afkPlayer == null) return false;
+
+        afkPlayer.updateActivity();
+        afkPlayer.setPermissionsValid(false);
+        afkPlayer.setBroadcastsMuted(isBroadcastsMutedStored(player));
+        visibility.handleJoin(player);
+        deadlines.schedule(afkPlayer, computeDeadline(afkPlayer, time.millis()));
+
+        // Состояние из бэкапа: сервер упал, пока игрок был в АФК мире
+        if (!afkPlayer.isAfk() && afkPlayer.hasReturnLocation()) {
+            if (player.getWorld().getName().equals(worldManager.getWorldName())) {
+                player.setInvulnerable(false);
+                returnFromAfk(player, afkPlayer, () -> player.setFallDistance(0));
+                logger.info("Игрок " + player.getName() + " возвращён на место из бэкапа");
+                backupManager.remove(player.getUniqueId());
+                return true;
+            }
+
+            // АФК на месте: бессмертие сохраняется в данных игрока
+            player.setInvulnerable(false);
+            afkPlayer.setReturnLocation(null);
+            backupManager.remove(player.getUniqueId());
+        }
+        return false;
     }
 
     public void removePlayer(UUID uuid) {
         if (uuid != null) {
-            players.remove(uuid);
+            AfkPlayer removed = players.remove(uuid);
+            afkIndex.remove(removed);
+            if (removed != null && removed.isAfk()) {
+                long now = time.millis();
+                network.publish(uuid, null, false, now);
+                analytics.recordEnd(uuid, removed.getAfkStartTime(), now, afkIndex.size());
+            }
+            distanceLimiter.forget(removed);
+            deadlines.cancel(removed);
+            backupManager.remove(uuid);
             logger.debug("Удалён игрок: " + uuid);
         }
     }
@@ -124,9 +256,23 @@ public class AfkManager {
             // Сбрасываем имя в табе
             player.setPlayerListName(player.getName());
 
-            // Возвращаем на место перед выходом
-            if (afkPlayer.hasReturnLocation()) {
-                player.teleport(afkPlayer.getReturnLocation());
+            // Иначе останется скрытым у тех, кто остался на сервере
+            visibility.show(player, afkPlayer);
+
+            // Бессмертие сохраняется в данных игрока — снимаем до сохранения
+            player.setInvulnerable(false);
+            if (afkPlayer.isInPlace()) {
+                player.setCollidable(afkPlayer.wasCollidable());
+            }
+
+            // Возвращаем на место перед выходом — синхронно, чтобы сервер сохранил
+            // игрока уже на месте. На Folia возможен только асинхронный телепорт.
+            if (afkPlayer.hasReturnLocation() && !afkPlayer.isInPlace()) {
+                if (VersionUtil.isFolia()) {
+                    teleport(player, afkPlayer.getReturnLocation(), () -> {});
+                } else {
+                    player.teleport(afkPlayer.getReturnLocation());
+                }
             }
         }
 
@@ -139,13 +285,88 @@ public class AfkManager {
         AfkPlayer afkPlayer = getAfkPlayer(player);
         if (afkPlayer == null) return;
 
-        afkPlayer.updateActivity();
+        updateActivity(player, afkPlayer);
+    }
+
+    /**
+     * Вариант для случаев, когда запись игрока уже найдена
+     */
+    public void updateActivity(Player player, AfkPlayer afkPlayer) {
+        long tick = clock.tick();
+
+        // Игрок уже отмечен активным в этом окне — зажатая кнопка, нажимная плита и т.п.
+        if (!afkPlayer.isAfk() && tick - afkPlayer.getLastActivityTick() < activityDebounceTicks) {
+            coalescedUpdates.increment();
+            return;
+        }
+
+        activityUpdates.increment();
+        afkPlayer.updateActivity(clock.now(), tick);
 
         if (afkPlayer.isAfk()) {
             setAfk(player, false);
         }
     }
 
+    /**
+     * Сколько обновлений активности засчитано
+     */
+    public long getActivityUpdates() {
+        return activityUpdates.sum();
+    }
+
+    /**
+     * Сколько обновлений активности отброшено как повторные в том же окне
+     */
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.sum();
+    }
+
+    /**
+     * Сколько игроков чекер проверил по наступившим дедлайнам
+     */
+    public long getCheckedPlayers() {
+        return checkedPlayers.sum();
+    }
+
+    // ==================== Права ====================
+
+    /**
+     * Право горячего пути из кэша игрока. Пересчитывается только после
+     * сброса — чекер читает готовую маску. Права команд сюда не идут.
+     */
+    private boolean hasPermission(Player player, AfkPlayer afkPlayer, AfkPermission permission) {
+        if (!permission.isCached()) {
+            return player.hasPermission(permission.getNode());
+        }
+
+        if (!afkPlayer.isPermissionsValid()) {
+            // Отмечаем до чтения прав: сброс во время пересчёта не потеряется
+            afkPlayer.setPermissionsValid(true);
+
+            int mask = 0;
+            for (AfkPermission node : AfkPermission.values()) {
+                if (node.isCached() && player.hasPermission(node.getNode())) {
+                    mask |= node.getMask();
+                }
+            }
+            afkPlayer.setPermissionMask(mask);
+        }
+
+        return afkPlayer.hasCachedPermission(permission);
+    }
+
+    /**
+     * Сбросить кэш прав игрока (пересчёт прав, смена мира).
+     * Можно вызывать из любого потока.
+     */
+    public void invalidatePermissions(UUID uuid) {
+        AfkPlayer afkPlayer = uuid != null ? players.get(uuid) : null;
+        if (afkPlayer != null) {
+            afkPlayer.setPermissionsValid(false);
+        }
+    }
+
     public void setAfk(Player player, boolean afk) {
         if (player == null || !player.isOnline()) return;
 
@@ -154,16 +375,45 @@ public class AfkManager {
 
         if (afkPlayer.isAfk() == afk) return;
 
+        // Телепорт возврата ещё в пути: сохранили бы место в АФК мире
+        if (afk && afkPlayer.isReturning()) {
+            logger.debug("Уход в АФК отложен до конца возврата: " + player.getName());
+            return;
+        }
+
+        // Начало сессии сбрасывается при возврате — запоминаем для аналитики
+        long afkSince = afkPlayer.getAfkStartTime();
         afkPlayer.setAfk(afk);
+        if (afk) {
+            // Без событий пересчёта (/op, attachments) — хотя бы раз за сессию АФК
+            afkPlayer.setPermissionsValid(false);
+            afkIndex.add(afkPlayer, player.getName(), player.getWorld().getName());
+        } else {
+            afkIndex.remove(afkPlayer);
+        }
+        // Другим серверам и в историю — через очереди, без ожидания
+        long now = time.millis();
+        if (afk) {
+            network.publish(afkPlayer.getUuid(), player.getName(), true, afkPlayer.getAfkStartTime());
+            analytics.recordStart(afkPlayer.getUuid(), afkPlayer.getAfkStartTime(), afkIndex.size());
+        } else {
+            network.publish(afkPlayer.getUuid(), player.getName(), false, now);
+            analytics.recordEnd(afkPlayer.getUuid(), afkSince, now, afkIndex.size());
+        }
+        deadlines.schedule(afkPlayer, computeDeadline(afkPlayer, now));
 
+        long start = profiler.start();
         try {
             if (afk) {
                 onAfkStart(player, afkPlayer);
+                profiler.stop(Profiler.Probe.AFK_START, start);
             } else {
                 onAfkEnd(player, afkPlayer);
+                profiler.stop(Profiler.Probe.AFK_END, start);
             }
 
-            backupManager.saveBackup(players);
+            // Запись на диск — в фоновом потоке BackupManager
+            backupManager.update(afkPlayer);
 
         } catch (Exception e) {
             logger.error("Ошибка изменения АФК статуса для " + player.getName(), e);
@@ -189,18 +439,40 @@ public class AfkManager {
             player.leaveVehicle();
         }
 
-        broadcastMessage("messages.afk-on", player);
+        broadcasts.publish(player, true);
+
+        if (messages.isTabPrefixEnabled()) {
+            player.setPlayerListName(messages.tabName(player.getName()));
+        }
+
+        // Трекеры других игроков перестают обрабатывать АФК игрока
+        visibility.hide(player, afkPlayer);
 
-        if (plugin.getConfig().getBoolean("settings.tab-prefix", true)) {
-            String format = plugin.getConfig().getString("settings.tab-prefix-format", "&7[AFK] ");
-            player.setPlayerListName(colorize(format) + player.getName());
+        if (inPlaceMode) {
+            // Остаёмся на месте: движение блокирует слушатель, толкать и бить нельзя
+            afkPlayer.setInPlace(true);
+            afkPlayer.setWasCollidable(player.isCollidable());
+            player.setCollidable(false);
+            player.setInvulnerable(true);
+            distanceLimiter.apply(player, afkPlayer);
+            logger.debug("АФК старт на месте: " + player.getName());
+            return;
         }
 
-        if (afkWorldEnabled && afkWorld != null) {
-            teleportToAfkWorld(player);
+        // Выгруженный мир загружается здесь, перед телепортом
+        Location afkSpawn = afkWorldEnabled ? worldManager.acquireSpawn() : null;
+        if (afkSpawn != null) {
+            // Дальности — после телепорта: иначе заморозятся чанки исходного мира
+            teleportToAfkWorld(player, afkPlayer, afkSpawn);
 
             // === FIX #3: Делаем игрока бессмертным в АФК мире ===
             player.setInvulnerable(true);
+        } else {
+            if (afkWorldEnabled) {
+                logger.warning("АФК-мир недоступен! Игрок остаётся на месте.");
+            }
+            // freeze-chunks и afk-view-distance: меньше тикающих, загруженных и отправляемых чанков
+            distanceLimiter.apply(player, afkPlayer);
         }
 
         // === FIX #1: Убираем setForceLoaded(false) — не нужно ===
@@ -210,20 +482,29 @@ public class AfkManager {
     }
 
     private void onAfkEnd(Player player, AfkPlayer afkPlayer) {
-        broadcastMessage("messages.afk-off", player);
+        broadcasts.publish(player, false);
 
-        if (plugin.getConfig().getBoolean("settings.tab-prefix", true)) {
+        if (messages.isTabPrefixEnabled()) {
             player.setPlayerListName(player.getName());
         }
 
         // === FIX #3: Убираем бессмертие ===
         player.setInvulnerable(false);
 
-        returnFromAfk(player, afkPlayer);
+        visibility.show(player, afkPlayer);
+
+        distanceLimiter.restore(player, afkPlayer);
+
+        if (afkPlayer.isInPlace()) {
+            // Телепорта и поиска безопасного места нет — только состояние
+            finishInPlace(player, afkPlayer);
+            logger.debug("АФК конец на месте: " + player.getName());
+            return;
+        }
 
         // === FIX #6: Сбрасываем урон от падения при возврате ===
         // Чтобы не было случайных смертей от лагов физики
-        player.setFallDistance(0);
+        returnFromAfk(player, afkPlayer, () -> player.setFallDistance(0));
 
         // === FIX #1: Убираем setForceLoaded(true) — это утечка памяти! ===
         // Чанк и так загрузится от телепорта игрока
@@ -231,101 +512,200 @@ public class AfkManager {
         logger.debug("АФК конец: " + player.getName());
     }
 
-    private void returnFromAfk(Player player, AfkPlayer afkPlayer) {
+    /**
+     * Возврат игрока на сохранённое место.
+     * after выполняется в потоке игрока, когда телепорт завершён.
+     * До этого игрок отмечен как возвращающийся и в АФК не уходит.
+     */
+    private void returnFromAfk(Player player, AfkPlayer afkPlayer, Runnable then) {
         Location returnLoc = afkPlayer.getReturnLocation();
+        afkPlayer.setReturnLocation(null);
+        afkPlayer.setReturning(true);
+
+        Runnable after = () -> {
+            afkPlayer.setReturning(false);
+            then.run();
+        };
 
         // === FIX #4: Если локация null — телепортируем на спавн ===
         if (returnLoc == null || returnLoc.getWorld() == null) {
             logger.warning("Нет локации возврата для " + player.getName() + ", телепортирую на спавн");
-            World mainWorld = Bukkit.getWorlds().get(0);
-            if (mainWorld != null) {
-                player.teleport(mainWorld.getSpawnLocation());
-            }
-            afkPlayer.setReturnLocation(null);
+            teleportToMainSpawn(player, after);
             return;
         }
 
         // Проверяем что мир загружен
         if (Bukkit.getWorld(returnLoc.getWorld().getName()) == null) {
             logger.warning("Мир " + returnLoc.getWorld().getName() + " не загружен, телепортирую на спавн");
-            World mainWorld = Bukkit.getWorlds().get(0);
-            if (mainWorld != null) {
-                player.teleport(mainWorld.getSpawnLocation());
-            }
-            afkPlayer.setReturnLocation(null);
+            teleportToMainSpawn(player, after);
             return;
         }
 
+        Runnable restore = restoreState(player, afkPlayer, after);
+
         // === FIX #5: Проверяем безопасность локации ===
-        Location safeLoc = findSafeLocation(returnLoc);
+        // Чанк грузим асинхронно, снимок снимаем в потоке региона, ищем место в фоне,
+        // в поток игрока возвращаемся только ради телепорта
+        loadChunkAsync(returnLoc, chunk -> scheduler.executeAtLocation(returnLoc, () -> {
+            SafeLocationSearch search = new SafeLocationSearch(chunk, returnLoc);
+
+            scheduler.runAsync(() -> {
+                Location safeLoc = search.run();
+                scheduler.executeForEntity(player, () -> teleport(player, safeLoc, restore));
+            });
+        }));
+    }
 
-        player.teleport(safeLoc);
-        player.setAllowFlight(afkPlayer.wasAllowFlight());
-        player.setFlying(afkPlayer.wasFlying());
+    /**
+     * Синхронный возврат (выключение сервера). На Folia — обычный путь.
+     */
+    private void returnFromAfkNow(Player player, AfkPlayer afkPlayer) {
+        if (afkPlayer.isInPlace()) {
+            player.setInvulnerable(false);
+            finishInPlace(player, afkPlayer);
+            return;
+        }
+
+        Location returnLoc = afkPlayer.getReturnLocation();
+
+        if (VersionUtil.isFolia() || returnLoc == null || returnLoc.getWorld() == null
+                || Bukkit.getWorld(returnLoc.getWorld().getName()) == null) {
+            returnFromAfk(player, afkPlayer, () -> {});
+            return;
+        }
 
-        // Восстанавливаем здоровье и голод
-        player.setHealth(Math.min(afkPlayer.getWasHealth(), player.getMaxHealth()));
-        player.setFoodLevel(afkPlayer.getWasFood());
-        player.setSaturation(afkPlayer.getWasSaturation());
+        afkPlayer.setReturnLocation(null);
+        Chunk chunk = returnLoc.getWorld().getChunkAt(returnLoc.getBlockX() >> 4, returnLoc.getBlockZ() >> 4);
+        player.teleport(new SafeLocationSearch(chunk, returnLoc).run());
+        restoreState(player, afkPlayer, () -> {}).run();
+    }
 
+    /**
+     * Выход из АФК на месте: возвращаем состояние без телепорта
+     */
+    private void finishInPlace(Player player, AfkPlayer afkPlayer) {
+        afkPlayer.setInPlace(false);
         afkPlayer.setReturnLocation(null);
+        player.setCollidable(afkPlayer.wasCollidable());
+        restoreState(player, afkPlayer, () -> player.setFallDistance(0)).run();
     }
 
     /**
-     * FIX #5: Поиск безопасной локации для телепорта
+     * Восстановление полёта, здоровья и голода после телепорта.
+     * Состояние запоминаем сейчас — к моменту телепорта игрок может снова уйти в АФК.
      */
-    private Location findSafeLocation(Location loc) {
-        if (isSafeLocation(loc)) {
-            return loc;
-        }
-
-        // Ищем безопасное место выше
-        Location checkLoc = loc.clone();
-        for (int y = 0; y < 10; y++) {
-            checkLoc.setY(loc.getY() + y);
-            if (isSafeLocation(checkLoc)) {
-                logger.debug("Найдена безопасная локация на Y+" + y);
-                return checkLoc;
-            }
+    private Runnable restoreState(Player player, AfkPlayer afkPlayer, Runnable after) {
+        final boolean allowFlight = afkPlayer.wasAllowFlight();
+        final boolean flying = afkPlayer.wasFlying();
+        final double health = afkPlayer.getWasHealth();
+        final int food = afkPlayer.getWasFood();
+        final float saturation = afkPlayer.getWasSaturation();
+
+        return () -> {
+            player.setAllowFlight(allowFlight);
+            player.setFlying(flying);
+
+            // Восстанавливаем здоровье и голод
+            player.setHealth(Math.min(health, player.getMaxHealth()));
+            player.setFoodLevel(food);
+            player.setSaturation(saturation);
+
+            after.run();
+        };
+    }
+
+    /**
+     * Paper: загрузить (или сгенерировать) чанк без блокировки главного потока.
+     * На Spigot чанк загружается синхронно, как раньше.
+     */
+    private void loadChunkAsync(Location location, Consumer<Chunk> then) {
+        World world = location.getWorld();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+
+        if (!VersionUtil.hasAsyncChunks()) {
+            then.accept(world.getChunkAt(chunkX, chunkZ));
+            return;
         }
 
-        // Ищем безопасное место ниже
-        checkLoc = loc.clone();
-        for (int y = 0; y < 10; y++) {
-            checkLoc.setY(loc.getY() - y);
-            if (isSafeLocation(checkLoc)) {
-                logger.debug("Найдена безопасная локация на Y-" + y);
-                return checkLoc;
+        world.getChunkAtAsync(chunkX, chunkZ).whenComplete((chunk, error) -> {
+            if (error != null) {
+                logger.error("Ошибка загрузки чанка для возврата", error);
             }
-        }
+            then.accept(chunk);
+        });
+    }
 
-        // Не нашли — возвращаем оригинал
-        logger.warning("Не найдена безопасная локация, телепортирую на оригинальную");
-        return loc;
+    private void teleportToMainSpawn(Player player, Runnable after) {
+        World mainWorld = Bukkit.getWorlds().get(0);
+        if (mainWorld != null) {
+            teleport(player, mainWorld.getSpawnLocation(), after);
+        } else {
+            after.run();
+        }
     }
 
     /**
-     * Проверка безопасности локации
+     * Телепорт с учётом ядра: на Paper и Folia — teleportAsync
+     * (без синхронной загрузки чанка), на Spigot — обычный teleport.
+     * after выполняется в потоке игрока после телепорта.
      */
-    private boolean isSafeLocation(Location loc) {
-        if (loc == null || loc.getWorld() == null) return false;
-
-        Block feet = loc.getBlock();
-        Block head = feet.getRelative(0, 1, 0);
-        Block ground = feet.getRelative(0, -1, 0);
+    private void teleport(Player player, Location location, Runnable after) {
+        long start = profiler.start();
 
-        // Проверяем что ноги и голова — воздух
-        if (!feet.getType().isAir() || !head.getType().isAir()) {
-            return false;
+        if (!VersionUtil.hasAsyncTeleport()) {
+            player.teleport(location);
+            profiler.stop(Profiler.Probe.TELEPORT, start);
+            after.run();
+            return;
         }
 
-        // Проверяем что под ногами не воздух и не лава
-        Material groundType = ground.getType();
-        if (groundType.isAir() || groundType == Material.LAVA || groundType == Material.FIRE) {
-            return false;
+        player.teleportAsync(location).whenComplete((success, error) -> {
+            profiler.stop(Profiler.Probe.TELEPORT, start);
+            if (error != null) {
+                logger.error("Ошибка телепорта " + player.getName(), error);
+            }
+            scheduler.executeForEntity(player, after);
+        });
+    }
+
+    /**
+     * FIX #5: Поиск безопасной локации для телепорта.
+     * Создаётся в потоке, владеющем чанком; run() можно вызывать из любого потока.
+     */
+    private final class SafeLocationSearch {
+
+        private final ChunkSnapshot snapshot;
+        private final Location location;
+        private final int minY;
+        private final int maxY;
+
+        private SafeLocationSearch(Chunk chunk, Location location) {
+            World world = location.getWorld();
+            this.snapshot = chunk != null ? chunk.getChunkSnapshot(false, false, false) : null;
+            this.location = location;
+            this.minY = VersionUtil.isAtLeast(17) ? world.getMinHeight() : 0;
+            this.maxY = world.getMaxHeight();
         }
 
-        return true;
+        private Location run() {
+            long start = profiler.start();
+            Location safe = snapshot != null ? SafeLocationFinder.find(snapshot, location, minY, maxY) : null;
+            profiler.stop(Profiler.Probe.SAFE_LOCATION, start);
+
+            if (safe == null) {
+                // Не нашли — возвращаем оригинал
+                logger.warning("Не найдена безопасная локация, телепортирую на оригинальную");
+                return location;
+            }
+
+            if (safe.getBlockX() != location.getBlockX() || safe.getBlockY() != location.getBlockY()
+                    || safe.getBlockZ() != location.getBlockZ()) {
+                logger.debug("Найдена безопасная локация: " + safe.getBlockX() + " "
+                        + safe.getBlockY() + " " + safe.getBlockZ());
+            }
+            return safe;
+        }
     }
 
     public void toggleAfk(Player player) {
@@ -337,154 +717,212 @@ public class AfkManager {
         }
     }
 
+    /**
+     * Включить/выключить уведомления об АФК других игроков
+     *
+     * @return true если уведомления теперь выключены
+     */
+    public boolean toggleBroadcasts(Player player) {
+        AfkPlayer afkPlayer = getAfkPlayer(player);
+        if (afkPlayer == null) return false;
+
+        boolean muted = !afkPlayer.isBroadcastsMuted();
+        afkPlayer.setBroadcastsMuted(muted);
+
+        // Сохраняем в самом игроке — переживает перезаход и рестарт
+        if (broadcastsMutedKey != null) {
+            if (muted) {
+                player.getPersistentDataContainer().set(broadcastsMutedKey, PersistentDataType.BYTE, (byte) 1);
+            } else {
+                player.getPersistentDataContainer().remove(broadcastsMutedKey);
+            }
+        }
+
+        return muted;
+    }
+
+    private boolean isBroadcastsMutedStored(Player player) {
+        return broadcastsMutedKey != null
+                && player.getPersistentDataContainer().has(broadcastsMutedKey, PersistentDataType.BYTE);
+    }
+
     public Map<UUID, AfkPlayer> getPlayers() {
         return players;
     }
 
     public int getAfkCount() {
-        int count = 0;
-        for (AfkPlayer ap : players.values()) {
-            if (ap.isAfk()) count++;
-        }
-        return count;
+        return afkIndex.size();
+    }
+
+    /**
+     * Сколько игроков ушли в АФК из мира worldName
+     */
+    public int getAfkCount(String worldName) {
+        return afkIndex.count(worldName);
+    }
+
+    /**
+     * Сколько тикающих чанков сейчас освобождено freeze-chunks
+     */
+    public long getFrozenChunks() {
+        return distanceLimiter.getFrozenChunks();
+    }
+
+    public AfkIndex getAfkIndex() {
+        return afkIndex;
+    }
+
+    public AfkMachineDetector getMachineDetector() {
+        return machineDetector;
+    }
+
+    public NetworkReplicator getNetwork() {
+        return network;
+    }
+
+    public AnalyticsStore getAnalytics() {
+        return analytics;
     }
 
     private void startAfkChecker() {
-        checkerTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                long now = System.currentTimeMillis();
-
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    try {
-                        checkPlayer(player, now);
-                    } catch (Exception e) {
-                        logger.error("Ошибка проверки игрока " + player.getName(), e);
+        // Игроки, которые уже на сервере (например, после /reload)
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            getAfkPlayer(player);
+        }
+
+        checkerTask = scheduler.runGlobalTimer(() -> processDeadlines(time.millis()), 20L, 20L);
+
+        logger.debug("АФК чекер запущен");
+    }
+
+    /**
+     * Проверяем только игроков с наступившим дедлайном.
+     * Пакетный доступ — для бенчмарков.
+     */
+    void processDeadlines(long now) {
+        long start = profiler.start();
+        List<AfkPlayer> due = deadlines.pollExpired(now);
+        checkedPlayers.add(due.size());
+
+        for (AfkPlayer afkPlayer : due) {
+            // Игрок вышел — запись осталась только в очереди
+            if (players.get(afkPlayer.getUuid()) != afkPlayer) continue;
+
+            Player player = Bukkit.getPlayer(afkPlayer.getUuid());
+            if (player == null || !player.isOnline()) continue;
+
+            // Проверка, переход в АФК и кик — в потоке, владеющем игроком
+            scheduler.executeForEntity(player, () -> {
+                try {
+                    long next = checkPlayer(player, afkPlayer, now);
+
+                    // Игрока могли кикнуть во время проверки
+                    if (players.get(afkPlayer.getUuid()) == afkPlayer) {
+                        deadlines.schedule(afkPlayer, next);
                     }
+                } catch (Exception e) {
+                    logger.error("Ошибка проверки игрока " + player.getName(), e);
+                    reschedule(afkPlayer);
                 }
-            }
-        }.runTaskTimer(plugin, 20L, 20L);
+            }, () -> reschedule(afkPlayer));
+        }
 
-        logger.debug("АФК чекер запущен");
+        // На Bukkit проверки выполнились выше, на Folia — только постановка в очередь
+        profiler.stop(Profiler.Probe.CHECKER, start);
     }
 
-    private void checkPlayer(Player player, long now) {
-        AfkPlayer afkPlayer = getAfkPlayer(player);
-        if (afkPlayer == null) return;
+    /**
+     * Проверка не состоялась (ошибка, задача снята на Folia). Игрок уже вынут
+     * из очереди, а активность его туда не возвращает — ставим заново,
+     * иначе его не проверят до перезахода.
+     */
+    private void reschedule(AfkPlayer afkPlayer) {
+        if (players.get(afkPlayer.getUuid()) == afkPlayer) {
+            deadlines.schedule(afkPlayer, computeDeadline(afkPlayer, time.millis()));
+        }
+    }
 
+    /**
+     * Проверка игрока, у которого наступил дедлайн
+     *
+     * @return следующий дедлайн игрока
+     */
+    long checkPlayer(Player player, AfkPlayer afkPlayer, long now) {
         long inactive = now - afkPlayer.getLastActivity();
 
-        if (!afkPlayer.isAfk() && inactive >= afkTimeout) {
-            setAfk(player, true);
-            return;
+        if (!afkPlayer.isAfk()) {
+            if (inactive >= afkTimeout) {
+                // Возврат на место не завершён — повторим, когда телепорт пройдёт
+                if (afkPlayer.isReturning()) return now + RETURN_RETRY_INTERVAL;
+                setAfk(player, true);
+            }
+            return computeDeadline(afkPlayer, now);
         }
 
-        if (!afkPlayer.isAfk()) return;
-        if (kickTimeout <= 0) return;
-        if (player.hasPermission("smartafk.bypass")) return;
+        if (kickTimeout <= 0) return AfkPlayer.NO_DEADLINE;
+        // Право могли выдать или снять без события пересчёта — читаем заново
+        afkPlayer.setPermissionsValid(false);
+        if (hasPermission(player, afkPlayer, AfkPermission.BYPASS)) return now + BYPASS_RECHECK_INTERVAL;
 
         long timeLeft = kickTimeout - inactive;
 
         if (timeLeft <= 0) {
             // === FIX #7: Сбрасываем имя перед киком ===
             player.setPlayerListName(player.getName());
-            player.kickPlayer(colorize(kickMessage));
+            player.kickPlayer(messages.kickMessage());
             logger.info("Кикнут за АФК: " + player.getName());
-            return;
+            return AfkPlayer.NO_DEADLINE;
         }
 
-        long secondsLeft = timeLeft / 1000;
-        if (secondsLeft == 120 || secondsLeft == 90 || secondsLeft == 60 ||
-                secondsLeft == 30 || secondsLeft == 10 || secondsLeft == 5) {
-
-            if (afkPlayer.getLastWarningTime() != secondsLeft) {
-                afkPlayer.setLastWarningTime(secondsLeft);
-                String warning = colorize(kickWarningMessage.replace("{time}", String.valueOf(secondsLeft)));
-                player.sendMessage(warning);
+        // Ближайшее наступившее предупреждение
+        long warning = -1;
+        for (long seconds : KICK_WARNINGS) {
+            if (seconds * 1000 >= timeLeft) {
+                warning = seconds;
             }
         }
-    }
-
-    private void teleportToAfkWorld(Player player) {
-        // === FIX #2: Мир уже создан при старте ===
-        if (afkWorld == null) {
-            afkWorld = Bukkit.getWorld(afkWorldName);
-        }
 
-        if (afkWorld == null) {
-            logger.warning("АФК-мир недоступен! Игрок остаётся на месте.");
-            return;
+        if (warning > 0 && afkPlayer.getLastWarningTime() != warning) {
+            afkPlayer.setLastWarningTime(warning);
+            player.sendMessage(messages.kickWarning(warning));
         }
 
-        Location afkSpawn = new Location(afkWorld, afkSpawnX, afkSpawnY, afkSpawnZ);
-        player.teleport(afkSpawn);
-        player.setAllowFlight(true);
-        player.setFlying(true);
+        return computeDeadline(afkPlayer, now);
     }
 
-    private World createAfkWorld() {
-        logger.info("Создаю АФК-мир: " + afkWorldName);
+    /**
+     * Ближайший момент, когда игроку что-то может понадобиться:
+     * переход в АФК, очередное предупреждение или кик
+     */
+    private long computeDeadline(AfkPlayer afkPlayer, long now) {
+        long lastActivity = afkPlayer.getLastActivity();
 
-        try {
-            WorldCreator creator = new WorldCreator(afkWorldName);
-            creator.type(WorldType.FLAT);
-            creator.generateStructures(false);
-            creator.generator(new EmptyWorldGenerator());
+        if (!afkPlayer.isAfk()) {
+            return lastActivity + afkTimeout;
+        }
 
-            World world = creator.createWorld();
+        if (kickTimeout <= 0) return AfkPlayer.NO_DEADLINE;
 
-            if (world != null) {
-                setupAfkWorld(world);
-                logger.info("АФК-мир создан!");
+        long kickAt = lastActivity + kickTimeout;
+        for (long seconds : KICK_WARNINGS) {
+            long warningAt = kickAt - seconds * 1000;
+            if (warningAt > now) {
+                return warningAt;
             }
-
-            return world;
-        } catch (Exception e) {
-            logger.error("Ошибка создания АФК-мира", e);
-            return null;
         }
-    }
 
-    @SuppressWarnings("deprecation")
-    private void setupAfkWorld(World world) {
-        try {
-            world.setGameRule(GameRule.DO_MOB_SPAWNING, false);
-            world.setGameRule(GameRule.DO_DAYLIGHT_CYCLE, false);
-            world.setGameRule(GameRule.DO_WEATHER_CYCLE, false);
-            world.setGameRule(GameRule.RANDOM_TICK_SPEED, 0);
-            world.setGameRule(GameRule.DO_FIRE_TICK, false);
-            world.setGameRule(GameRule.ANNOUNCE_ADVANCEMENTS, false);
-            world.setGameRule(GameRule.DO_IMMEDIATE_RESPAWN, true);
-            world.setGameRule(GameRule.SPECTATORS_GENERATE_CHUNKS, false);
-            world.setGameRule(GameRule.FALL_DAMAGE, false);
-        } catch (Exception e) {
-            try {
-                world.setGameRuleValue("doMobSpawning", "false");
-                world.setGameRuleValue("doDaylightCycle", "false");
-                world.setGameRuleValue("doWeatherCycle", "false");
-                world.setGameRuleValue("randomTickSpeed", "0");
-                world.setGameRuleValue("doFireTick", "false");
-            } catch (Exception ignored) {}
-        }
-
-        world.setTime(6000);
-        world.setStorm(false);
-        world.setThundering(false);
-        world.setDifficulty(Difficulty.PEACEFUL);
+        return kickAt;
     }
 
-    private void broadcastMessage(String path, Player player) {
-        String prefix = plugin.getConfig().getString("messages.prefix", "");
-        String msg = plugin.getConfig().getString(path, "");
-
-        if (msg.isEmpty()) return;
+    private void teleportToAfkWorld(Player player, AfkPlayer afkPlayer, Location afkSpawn) {
+        teleport(player, afkSpawn, () -> {
+            player.setAllowFlight(true);
+            player.setFlying(true);
 
-        msg = colorize(prefix + msg.replace("{player}", player.getName()));
-        Bukkit.broadcastMessage(msg);
-    }
-
-    private String colorize(String msg) {
-        if (msg == null) return "";
-        return ChatColor.translateAlternateColorCodes('&', msg);
+            // Вышел из АФК, пока летел телепорт, — restore уже прошёл, ограничивать нечего
+            if (afkPlayer.isAfk()) {
+                distanceLimiter.apply(player, afkPlayer);
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.honeymysteryworld.smartafk;
+
+/**
+ * Права плагина. Права горячих путей (cached) кэшируются в {@link AfkPlayer},
+ * права команд проверяются напрямую — снятое право действует сразу
+ */
+public enum AfkPermission {
+
+    AFK("smartafk.afk", false),
+    STATUS("smartafk.status", false),
+    RELOAD("smartafk.reload", false),
+    NOTIFY("smartafk.notify", false),
+    PROFILE("smartafk.profile", false),
+    STATS("smartafk.stats", false),
+    // Чекер проверяет каждую секунду
+    BYPASS("smartafk.bypass", true);
+
+    private final String node;
+    private final boolean cached;
+    private final int mask;
+
+    AfkPermission(String node, boolean cached) {
+        this.node = node;
+        this.cached = cached;
+        this.mask = 1 << ordinal();
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    boolean isCached() {
+        return cached;
+    }
+
+    int getMask() {
+        return mask;
+    }
+}
@@ -1,19 +1,30 @@
 package com.honeymysteryworld.smartafk;
 
+import com.honeymysteryworld.smartafk.scheduler.TaskHandle;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 
+import java.time.Clock;
 import java.util.UUID;
 
 public class AfkPlayer {
 
+    /** Дедлайн не запланирован */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
     private final UUID uuid;
-    private long lastActivity;
-    private long afkStartTime;
-    private boolean afk;
+    private final Clock clock;
+
+    // volatile: на Folia читаются из глобального потока чекера и команд
+    private volatile long lastActivity;
+    private long lastActivityTick = Long.MIN_VALUE / 2;
+    private volatile long afkStartTime;
+    private volatile boolean afk;
 
     // Сохранённое состояние
     private Location returnLocation;
+    // Возврат на место ещё не завершён: локация уже снята, телепорт в пути
+    private volatile boolean returning;
     private boolean wasFlying;
     private boolean wasAllowFlight;
     private GameMode wasGameMode;
@@ -31,12 +42,54 @@ public class AfkPlayer {
     // Вагонетка
     private boolean wasInVehicle;
 
+    // АФК на месте (afk-mode: in-place) — без телепортов
+    private boolean inPlace;
+    private boolean wasCollidable;
+
+    // Дальность симуляции до АФК (-1 = не меняли) и сколько чанков это освободило
+    private int wasSimulationDistance;
+    private int frozenChunks;
+
+    // Дальности прорисовки и отправки до АФК (-1 = не меняли)
+    private int wasViewDistance;
+    private int wasSendViewDistance;
+    private TaskHandle distanceRestoreTask;
+
     // Предупреждения
     private long lastWarningTime;
 
+    // Ближайший дедлайн в очереди чекера
+    private long scheduledDeadline;
+
+    // Последний блок, в котором засчитали движение
+    private int lastBlockX = Integer.MIN_VALUE;
+    private int lastBlockY = Integer.MIN_VALUE;
+    private int lastBlockZ = Integer.MIN_VALUE;
+
+    // Последние перемещения и клики для AfkMachineDetector (создаётся при первой записи)
+    private ActivityPattern activityPattern;
+
+    // Скрыт от других игроков (hide-afk-players)
+    private volatile boolean hidden;
+
+    // Игрок отключил уведомления об АФК других игроков
+    private volatile boolean broadcastsMuted;
+
+    // Кэш прав: битовая маска AfkPermission, пересчитывается после сброса
+    private volatile boolean permissionsValid;
+    private volatile int permissionMask;
+
     public AfkPlayer(UUID uuid) {
+        this(uuid, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock источник времени для активности и длительности АФК
+     */
+    public AfkPlayer(UUID uuid, Clock clock) {
         this.uuid = uuid;
-        this.lastActivity = System.currentTimeMillis();
+        this.clock = clock;
+        this.lastActivity = clock.millis();
         this.afkStartTime = 0;
         this.afk = false;
         this.returnLocation = null;
@@ -50,7 +103,14 @@ public class AfkPlayer {
         this.wasSaturation = 5.0f;
         this.wasFallDistance = 0;
         this.wasInVehicle = false;
+        this.inPlace = false;
+        this.wasCollidable = true;
+        this.wasSimulationDistance = -1;
+        this.frozenChunks = 0;
+        this.wasViewDistance = -1;
+        this.wasSendViewDistance = -1;
         this.lastWarningTime = -1;
+        this.scheduledDeadline = NO_DEADLINE;
     }
 
     // ==================== UUID ====================
@@ -66,12 +126,25 @@ public class AfkPlayer {
     }
 
     public void updateActivity() {
-        this.lastActivity = System.currentTimeMillis();
+        this.lastActivity = clock.millis();
+        this.lastWarningTime = -1;
+    }
+
+    /**
+     * Отметить активность по грубым часам
+     */
+    public void updateActivity(long now, long tick) {
+        this.lastActivity = now;
+        this.lastActivityTick = tick;
         this.lastWarningTime = -1;
     }
 
+    public long getLastActivityTick() {
+        return lastActivityTick;
+    }
+
     public long getInactiveTime() {
-        return System.currentTimeMillis() - lastActivity;
+        return clock.millis() - lastActivity;
     }
 
     // ==================== АФК статус ====================
@@ -83,7 +156,7 @@ public class AfkPlayer {
     public void setAfk(boolean afk) {
         this.afk = afk;
         if (afk) {
-            this.afkStartTime = System.currentTimeMillis();
+            this.afkStartTime = clock.millis();
         } else {
             this.afkStartTime = 0;
             this.lastWarningTime = -1;
@@ -98,11 +171,18 @@ public class AfkPlayer {
         if (!afk || afkStartTime == 0) {
             return 0;
         }
-        return System.currentTimeMillis() - afkStartTime;
+        return clock.millis() - afkStartTime;
     }
 
     public String getAfkDurationFormatted() {
-        long seconds = getAfkDuration() / 1000;
+        return formatDuration(getAfkDuration());
+    }
+
+    /**
+     * Длительность в виде "5 мин 12 сек" / "2 ч 3 мин"
+     */
+    public static String formatDuration(long millis) {
+        long seconds = millis / 1000;
 
         if (seconds < 60) {
             return seconds + " сек";
@@ -131,6 +211,14 @@ public class AfkPlayer {
         return returnLocation != null && returnLocation.getWorld() != null;
     }
 
+    public boolean isReturning() {
+        return returning;
+    }
+
+    public void setReturning(boolean returning) {
+        this.returning = returning;
+    }
+
     // ==================== Полёт ====================
 
     public boolean wasFlying() {
@@ -223,6 +311,66 @@ public class AfkPlayer {
         this.wasInVehicle = wasInVehicle;
     }
 
+    // ==================== АФК на месте ====================
+
+    public boolean isInPlace() {
+        return inPlace;
+    }
+
+    public void setInPlace(boolean inPlace) {
+        this.inPlace = inPlace;
+    }
+
+    public boolean wasCollidable() {
+        return wasCollidable;
+    }
+
+    public void setWasCollidable(boolean wasCollidable) {
+        this.wasCollidable = wasCollidable;
+    }
+
+    // ==================== Дальности ====================
+
+    public int getWasSimulationDistance() {
+        return wasSimulationDistance;
+    }
+
+    public void setWasSimulationDistance(int distance) {
+        this.wasSimulationDistance = distance;
+    }
+
+    public int getFrozenChunks() {
+        return frozenChunks;
+    }
+
+    public void setFrozenChunks(int chunks) {
+        this.frozenChunks = chunks;
+    }
+
+    public int getWasViewDistance() {
+        return wasViewDistance;
+    }
+
+    public void setWasViewDistance(int distance) {
+        this.wasViewDistance = distance;
+    }
+
+    public int getWasSendViewDistance() {
+        return wasSendViewDistance;
+    }
+
+    public void setWasSendViewDistance(int distance) {
+        this.wasSendViewDistance = distance;
+    }
+
+    public TaskHandle getDistanceRestoreTask() {
+        return distanceRestoreTask;
+    }
+
+    public void setDistanceRestoreTask(TaskHandle task) {
+        this.distanceRestoreTask = task;
+    }
+
     // ==================== Предупреждения ====================
 
     public long getLastWarningTime() {
@@ -233,12 +381,90 @@ public class AfkPlayer {
         this.lastWarningTime = time;
     }
 
+    // ==================== Позиция ====================
+
+    /**
+     * Запомнить блок игрока
+     *
+     * @return true если блок отличается от последнего засчитанного
+     */
+    public boolean moveToBlock(int x, int y, int z) {
+        if (x == lastBlockX && y == lastBlockY && z == lastBlockZ) {
+            return false;
+        }
+
+        lastBlockX = x;
+        lastBlockY = y;
+        lastBlockZ = z;
+        return true;
+    }
+
+    ActivityPattern getActivityPattern() {
+        if (activityPattern == null) {
+            activityPattern = new ActivityPattern();
+        }
+        return activityPattern;
+    }
+
+    ActivityPattern peekActivityPattern() {
+        return activityPattern;
+    }
+
+    // ==================== Видимость ====================
+
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    public void setHidden(boolean hidden) {
+        this.hidden = hidden;
+    }
+
+    // ==================== Уведомления ====================
+
+    public boolean isBroadcastsMuted() {
+        return broadcastsMuted;
+    }
+
+    public void setBroadcastsMuted(boolean muted) {
+        this.broadcastsMuted = muted;
+    }
+
+    // ==================== Права ====================
+
+    public boolean isPermissionsValid() {
+        return permissionsValid;
+    }
+
+    public void setPermissionsValid(boolean valid) {
+        this.permissionsValid = valid;
+    }
+
+    public void setPermissionMask(int mask) {
+        this.permissionMask = mask;
+    }
+
+    public boolean hasCachedPermission(AfkPermission permission) {
+        return (permissionMask & permission.getMask()) != 0;
+    }
+
+    // ==================== Дедлайн ====================
+
+    public long getScheduledDeadline() {
+        return scheduledDeadline;
+    }
+
+    public void setScheduledDeadline(long deadline) {
+        this.scheduledDeadline = deadline;
+    }
+
     // ==================== Утилиты ====================
 
     public void reset() {
         this.afk = false;
         this.afkStartTime = 0;
         this.returnLocation = null;
+        this.returning = false;
         this.wasFlying = false;
         this.wasAllowFlight = false;
         this.wasGameMode = null;
@@ -249,8 +475,14 @@ public class AfkPlayer {
         this.wasSaturation = 5.0f;
         this.wasFallDistance = 0;
         this.wasInVehicle = false;
+        this.inPlace = false;
+        this.wasCollidable = true;
+        this.wasSimulationDistance = -1;
+        this.frozenChunks = 0;
+        this.wasViewDistance = -1;
+        this.wasSendViewDistance = -1;
         this.lastWarningTime = -1;
-        this.lastActivity = System.currentTimeMillis();
+        this.lastActivity = clock.millis();
     }
 
     @Override
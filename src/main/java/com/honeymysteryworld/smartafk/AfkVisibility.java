@@ -0,0 +1,92 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.scheduler.TaskScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+/**
+ * Скрытие АФК игроков от остальных (hide-afk-players).
+ *
+ * Скрытый игрок не отслеживается трекером сущностей у других игроков —
+ * в том числе у других АФК игроков, стоящих на одной точке АФК мира.
+ * Видимость меняется только при переходах, входе и выходе, а не каждый тик.
+ * Используется hidePlayer(plugin, ...), поэтому не конфликтует с плагинами ванища.
+ */
+public class AfkVisibility {
+
+    private final SmartAFK plugin;
+    private final TaskScheduler scheduler;
+    private final AfkIndex afkIndex;
+
+    private volatile boolean enabled;
+
+    public AfkVisibility(SmartAFK plugin, TaskScheduler scheduler, AfkIndex afkIndex) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.afkIndex = afkIndex;
+        this.enabled = plugin.getConfig().getBoolean("settings.hide-afk-players", false);
+    }
+
+    public void reload() {
+        boolean wasEnabled = enabled;
+        enabled = plugin.getConfig().getBoolean("settings.hide-afk-players", false);
+        if (wasEnabled == enabled) return;
+
+        // Опцию переключили — применяем к тем, кто уже в АФК
+        for (AfkIndex.Entry entry : afkIndex.list(Integer.MAX_VALUE)) {
+            Player player = Bukkit.getPlayer(entry.getUuid());
+            if (player == null) continue;
+
+            if (enabled) {
+                hide(player, entry.getAfkPlayer());
+            } else {
+                show(player, entry.getAfkPlayer());
+            }
+        }
+    }
+
+    /**
+     * Игрок ушёл в АФК — скрыть его от всех
+     */
+    public void hide(Player player, AfkPlayer afkPlayer) {
+        if (!enabled || afkPlayer.isHidden()) return;
+
+        afkPlayer.setHidden(true);
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            if (viewer != player) {
+                scheduler.executeForEntity(viewer, () -> viewer.hidePlayer(plugin, player));
+            }
+        }
+    }
+
+    /**
+     * Игрок вернулся или вышел — показать его снова.
+     * Скрытие хранится у смотрящего по UUID, поэтому при выходе тоже нужно.
+     */
+    public void show(Player player, AfkPlayer afkPlayer) {
+        if (afkPlayer == null || !afkPlayer.isHidden()) return;
+
+        afkPlayer.setHidden(false);
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            if (viewer != player) {
+                scheduler.executeForEntity(viewer, () -> viewer.showPlayer(plugin, player));
+            }
+        }
+    }
+
+    /**
+     * Новый игрок не должен видеть тех, кто уже в АФК
+     */
+    public void handleJoin(Player viewer) {
+        if (!enabled || afkIndex.isEmpty()) return;
+
+        for (AfkIndex.Entry entry : afkIndex.list(Integer.MAX_VALUE)) {
+            if (!entry.getAfkPlayer().isHidden()) continue;
+
+            Player hidden = Bukkit.getPlayer(entry.getUuid());
+            if (hidden != null && hidden != viewer) {
+                viewer.hidePlayer(plugin, hidden);
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.scheduler.TaskHandle;
+import com.honeymysteryworld.smartafk.scheduler.TaskScheduler;
+import com.honeymysteryworld.smartafk.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.Difficulty;
+import org.bukkit.GameRule;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+
+/**
+ * Жизненный цикл АФК мира.
+ *
+ * Мир загружается не в onEnable, а на первом тике после старта (lazy-load)
+ * или по требованию перед переходом в АФК. Автосохранение выключено —
+ * в пустом мире нечего писать. Если в мире никого нет дольше unload-after,
+ * он выгружается без сохранения. Время и погода заморожены геймрулами.
+ *
+ * На Folia миры нельзя загружать и выгружать на лету — там мир
+ * должен существовать заранее, и управление жизненным циклом выключено.
+ */
+public class AfkWorldManager {
+
+    private final SmartAFK plugin;
+    private final Logger logger;
+    private final TaskScheduler scheduler;
+
+    private volatile World world;
+    private TaskHandle lifecycleTask;
+    private boolean warmPending;
+    private volatile long lastUsed;
+
+    // Закреплённый чанк спавна
+    private int pinnedX;
+    private int pinnedZ;
+
+    private String worldName;
+    private double spawnX;
+    private double spawnY;
+    private double spawnZ;
+    private boolean lazyLoad;
+    private long unloadAfterMillis;
+
+    public AfkWorldManager(SmartAFK plugin, Logger logger, TaskScheduler scheduler) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.scheduler = scheduler;
+        reload();
+    }
+
+    public void reload() {
+        worldName = plugin.getConfig().getString("afk-world.world-name", "world_afk");
+        spawnX = plugin.getConfig().getDouble("afk-world.spawn-location.x", 0.5);
+        spawnY = plugin.getConfig().getDouble("afk-world.spawn-location.y", 100);
+        spawnZ = plugin.getConfig().getDouble("afk-world.spawn-location.z", 0.5);
+        lazyLoad = plugin.getConfig().getBoolean("afk-world.lifecycle.lazy-load", true);
+        unloadAfterMillis = plugin.getConfig().getInt("afk-world.lifecycle.unload-after", 300) * 1000L;
+
+        World current = world;
+        if (current == null) return;
+
+        if (!current.getName().equals(worldName)) {
+            // Мир переименовали в конфиге — старый не трогаем, новый загрузится по требованию
+            world = null;
+        } else if (chunkX(spawnX) != pinnedX || chunkZ(spawnZ) != pinnedZ) {
+            current.removePluginChunkTicket(pinnedX, pinnedZ, plugin);
+            pinSpawnChunk(current);
+        }
+    }
+
+    /**
+     * Запуск при включении плагина или переходе в режим мира через reload
+     */
+    public void start() {
+        // Таймер уже идёт
+        if (lifecycleTask != null) return;
+
+        if (VersionUtil.isFolia()) {
+            World existing = Bukkit.getWorld(worldName);
+            if (existing == null) {
+                // Folia не умеет создавать миры на лету
+                logger.warning("АФК-мир " + worldName + " не найден. На Folia его нужно создать заранее — игроки будут АФК на месте.");
+                return;
+            }
+            logger.info("АФК-мир загружен: " + worldName);
+            world = existing;
+            prepare(existing);
+            return;
+        }
+
+        if (lazyLoad) {
+            // Не задерживаем включение плагина — мир прогреется на первом тике
+            warmPending = true;
+        } else {
+            load();
+        }
+
+        lifecycleTask = scheduler.runGlobalTimer(this::tick, 20L, 20L);
+    }
+
+    /**
+     * Остановка таймера: выключение плагина или уход из режима мира.
+     * Загруженный мир не трогаем — в нём ещё могут быть АФК игроки.
+     */
+    public void shutdown() {
+        warmPending = false;
+        if (lifecycleTask != null) {
+            lifecycleTask.cancel();
+            lifecycleTask = null;
+        }
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * Точка спавна АФК мира. Загружает мир, если он выгружен.
+     * Вызывается перед переходом в АФК.
+     *
+     * @return null если мир недоступен
+     */
+    public Location acquireSpawn() {
+        World current = world;
+
+        if (current == null) {
+            if (VersionUtil.isFolia()) return null;
+            current = load();
+            if (current == null) return null;
+        }
+
+        lastUsed = System.currentTimeMillis();
+        return new Location(current, spawnX, spawnY, spawnZ);
+    }
+
+    /**
+     * Раз в секунду: отложенный прогрев и выгрузка пустого мира
+     */
+    private void tick() {
+        World current = world;
+        long now = System.currentTimeMillis();
+
+        if (current == null) {
+            if (warmPending) {
+                warmPending = false;
+                load();
+            }
+            return;
+        }
+
+        if (!current.getPlayers().isEmpty()) {
+            lastUsed = now;
+            return;
+        }
+
+        if (unloadAfterMillis > 0 && now - lastUsed >= unloadAfterMillis) {
+            unload(current);
+        }
+    }
+
+    private World load() {
+        World loaded = Bukkit.getWorld(worldName);
+
+        if (loaded == null) {
+            loaded = create();
+            if (loaded == null) return null;
+        } else {
+            logger.info("АФК-мир загружен: " + worldName);
+        }
+
+        lastUsed = System.currentTimeMillis();
+        world = loaded;
+        prepare(loaded);
+        return loaded;
+    }
+
+    private void unload(World current) {
+        world = null;
+
+        // Сохранять нечего: автосохранение выключено, мир пустой
+        if (Bukkit.unloadWorld(current, false)) {
+            logger.debug("АФК-мир выгружен: никого нет " + (unloadAfterMillis / 1000) + " сек");
+        } else {
+            world = current;
+            lastUsed = System.currentTimeMillis();
+            logger.debug("АФК-мир не удалось выгрузить, попробую позже");
+        }
+    }
+
+    private World create() {
+        logger.info("Создаю АФК-мир: " + worldName);
+
+        try {
+            WorldCreator creator = new WorldCreator(worldName);
+            creator.environment(World.Environment.NORMAL);
+            creator.generateStructures(false);
+            // Современный генератор не делает работы на чанк; старый — для ядер до 1.17.1
+            creator.generator(VersionUtil.isAtLeast(17, 1)
+                    ? new EmptyWorldGenerator(spawnX, spawnY, spawnZ)
+                    : new LegacyEmptyWorldGenerator());
+
+            World created = creator.createWorld();
+
+            if (created != null) {
+                logger.info("АФК-мир создан!");
+            }
+
+            return created;
+        } catch (Exception e) {
+            logger.error("Ошибка создания АФК-мира", e);
+            return null;
+        }
+    }
+
+    private void prepare(World target) {
+        setupAfkWorld(target);
+        pinSpawnChunk(target);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void setupAfkWorld(World target) {
+        try {
+            target.setGameRule(GameRule.DO_MOB_SPAWNING, false);
+            target.setGameRule(GameRule.DO_DAYLIGHT_CYCLE, false);
+            target.setGameRule(GameRule.DO_WEATHER_CYCLE, false);
+            target.setGameRule(GameRule.RANDOM_TICK_SPEED, 0);
+            target.setGameRule(GameRule.DO_FIRE_TICK, false);
+            target.setGameRule(GameRule.ANNOUNCE_ADVANCEMENTS, false);
+            target.setGameRule(GameRule.DO_IMMEDIATE_RESPAWN, true);
+            target.setGameRule(GameRule.SPECTATORS_GENERATE_CHUNKS, false);
+            target.setGameRule(GameRule.FALL_DAMAGE, false);
+        } catch (Exception e) {
+            try {
+                target.setGameRuleValue("doMobSpawning", "false");
+                target.setGameRuleValue("doDaylightCycle", "false");
+                target.setGameRuleValue("doWeatherCycle", "false");
+                target.setGameRuleValue("randomTickSpeed", "0");
+                target.setGameRuleValue("doFireTick", "false");
+            } catch (Exception ignored) {}
+        }
+
+        target.setTime(6000);
+        target.setStorm(false);
+        target.setThundering(false);
+        target.setDifficulty(Difficulty.PEACEFUL);
+
+        // В мире ничего не меняется — не пишем регионы при автосохранении
+        target.setAutoSave(false);
+    }
+
+    /**
+     * Держим загруженным только чанк точки спавна АФК мира — вместо всей
+     * области спавна. Прибывающие игроки не вызывают генерацию и загрузку.
+     */
+    private void pinSpawnChunk(World target) {
+        if (!VersionUtil.hasForceLoaded()) return;
+
+        try {
+            target.setKeepSpawnInMemory(false);
+        } catch (Throwable ignored) {
+            // Убрано в новых версиях — там область спавна задаётся геймрулом
+        }
+
+        int x = chunkX(spawnX);
+        int z = chunkZ(spawnZ);
+        pinnedX = x;
+        pinnedZ = z;
+
+        if (VersionUtil.hasAsyncChunks()) {
+            // Прогреваем чанк без блокировки тика, тикет — когда он готов
+            target.getChunkAtAsync(x, z).thenAccept(chunk -> {
+                // Мир могли выгрузить, пока чанк грузился
+                if (world == target) {
+                    target.addPluginChunkTicket(x, z, plugin);
+                }
+            });
+        } else {
+            target.addPluginChunkTicket(x, z, plugin);
+        }
+
+        logger.debug("Чанк спавна АФК мира закреплён: " + x + ", " + z);
+    }
+
+    private static int chunkX(double x) {
+        return (int) Math.floor(x) >> 4;
+    }
+
+    private static int chunkZ(double z) {
+        return (int) Math.floor(z) >> 4;
+    }
+}
@@ -0,0 +1,168 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.scheduler.TaskHandle;
+import com.honeymysteryworld.smartafk.scheduler.TaskScheduler;
+import com.honeymysteryworld.smartafk.utils.MessageTemplate;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Рассылка сообщений об АФК со склейкой в сводку.
+ *
+ * В пределах окна первые threshold переходов отправляются как обычно,
+ * остальные копятся и уходят одной строкой в конце окна.
+ * Игроки, отключившие уведомления (/afknotify), сообщений не получают.
+ */
+public class BroadcastDigest {
+
+    private final SmartAFK plugin;
+    private final AfkManager afkManager;
+    private final Messages messages;
+    private final Clock clock;
+
+    private final Object lock = new Object();
+    private final List<String> pendingOn = new ArrayList<>();
+    private final List<String> pendingOff = new ArrayList<>();
+    private long windowEnd;
+    private int sentInWindow;
+
+    private TaskHandle flushTask;
+    private volatile boolean enabled;
+    private volatile long windowMillis;
+    private volatile int threshold;
+    private volatile int maxNames;
+
+    public BroadcastDigest(SmartAFK plugin, AfkManager afkManager, Messages messages, Clock clock) {
+        this.plugin = plugin;
+        this.afkManager = afkManager;
+        this.messages = messages;
+        this.clock = clock;
+        reload();
+    }
+
+    public void reload() {
+        enabled = plugin.getConfig().getBoolean("broadcast.digest.enabled", true);
+        windowMillis = plugin.getConfig().getInt("broadcast.digest.window", 10) * 1000L;
+        threshold = plugin.getConfig().getInt("broadcast.digest.threshold", 5);
+        maxNames = plugin.getConfig().getInt("broadcast.digest.max-names", 10);
+    }
+
+    public void start(TaskScheduler scheduler) {
+        stop();
+        // Раз в секунду проверяем, не закончилось ли окно
+        flushTask = scheduler.runGlobalTimer(() -> flushIfDue(clock.millis()), 20L, 20L);
+    }
+
+    /**
+     * Остановить таймер и сразу разослать накопленное
+     */
+    public void stop() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flushIfDue(Long.MAX_VALUE);
+    }
+
+    /**
+     * Сообщить о переходе игрока. Вызывается из потока игрока.
+     */
+    public void publish(Player player, boolean afk) {
+        MessageTemplate template = afk ? messages.getAfkOn() : messages.getAfkOff();
+        if (template.isEmpty()) return;
+
+        String name = player.getName();
+
+        if (!enabled) {
+            send(template.render(name));
+            return;
+        }
+
+        long now = clock.millis();
+        List<String> digest = null;
+        boolean individual;
+
+        synchronized (lock) {
+            if (now >= windowEnd) {
+                // Таймер мог не успеть — дорассылаем прошлое окно перед новым
+                digest = drainLocked();
+                windowEnd = now + windowMillis;
+                sentInWindow = 0;
+            }
+
+            individual = sentInWindow < threshold;
+            if (individual) {
+                sentInWindow++;
+            } else if (!(afk ? pendingOff : pendingOn).remove(name)) {
+                // Вошёл и вышел в одном окне — в сводке его нет вовсе
+                (afk ? pendingOn : pendingOff).add(name);
+            }
+        }
+
+        sendAll(digest);
+        if (individual) {
+            send(template.render(name));
+        }
+    }
+
+    private void flushIfDue(long now) {
+        List<String> digest;
+        synchronized (lock) {
+            if (now < windowEnd) return;
+            digest = drainLocked();
+        }
+        sendAll(digest);
+    }
+
+    private List<String> drainLocked() {
+        if (pendingOn.isEmpty() && pendingOff.isEmpty()) return null;
+
+        List<String> lines = new ArrayList<>(2);
+        if (!pendingOn.isEmpty()) {
+            lines.add(render(messages.getAfkDigestOn(), pendingOn));
+            pendingOn.clear();
+        }
+        if (!pendingOff.isEmpty()) {
+            lines.add(render(messages.getAfkDigestOff(), pendingOff));
+            pendingOff.clear();
+        }
+        return lines;
+    }
+
+    private String render(MessageTemplate template, List<String> names) {
+        int shown = Math.min(names.size(), maxNames);
+        StringBuilder list = new StringBuilder();
+
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) list.append(", ");
+            list.append(names.get(i));
+        }
+        if (names.size() > shown) {
+            list.append(" и ещё ").append(names.size() - shown);
+        }
+
+        return template.render(String.valueOf(names.size()), list.toString());
+    }
+
+    private void sendAll(List<String> lines) {
+        if (lines == null) return;
+        for (String line : lines) {
+            if (!line.isEmpty()) {
+                send(line);
+            }
+        }
+    }
+
+    private void send(String message) {
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            AfkPlayer afkPlayer = afkManager.peekAfkPlayer(online);
+            if (afkPlayer != null && afkPlayer.isBroadcastsMuted()) continue;
+            online.sendMessage(message);
+        }
+        Bukkit.getConsoleSender().sendMessage(message);
+    }
+}
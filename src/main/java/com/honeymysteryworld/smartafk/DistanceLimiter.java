@@ -0,0 +1,230 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.scheduler.TaskHandle;
+import com.honeymysteryworld.smartafk.scheduler.TaskScheduler;
+import com.honeymysteryworld.smartafk.utils.Logger;
+import org.bukkit.entity.Player;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Понижение дальностей АФК игрокам (per-player API Paper).
+ *
+ * freeze-chunks: дальность симуляции опускается до минимума, чтобы фермы
+ * и редстоун вокруг АФК игрока не тикали на полной дальности.
+ * afk-view-distance: дальности прорисовки и отправки чанков опускаются,
+ * а при возвращении могут расти обратно по шагу, без всплеска отправки чанков.
+ * Исходные значения хранятся в AfkPlayer и возвращаются при выходе из АФК.
+ */
+public class DistanceLimiter {
+
+    private final SmartAFK plugin;
+    private final Logger logger;
+    private final TaskScheduler scheduler;
+
+    // Сколько тикающих чанков сейчас освобождено (оценка: перекрытия игроков не учитываются)
+    private final AtomicLong frozenChunks = new AtomicLong();
+
+    private volatile boolean freezeChunks;
+    private volatile int simulationDistance;
+
+    private volatile boolean reduceView;
+    private volatile int viewDistance;
+    private volatile int sendViewDistance;
+    private volatile int restoreStep;
+    private volatile long restoreInterval;
+
+    public DistanceLimiter(SmartAFK plugin, Logger logger, TaskScheduler scheduler) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.scheduler = scheduler;
+        reload();
+    }
+
+    public void reload() {
+        freezeChunks = plugin.getConfig().getBoolean("freeze-chunks", true);
+        simulationDistance = plugin.getConfig().getInt("freeze-simulation-distance", 2);
+
+        reduceView = plugin.getConfig().getBoolean("afk-view-distance.enabled", true);
+        viewDistance = plugin.getConfig().getInt("afk-view-distance.view-distance", 2);
+        sendViewDistance = plugin.getConfig().getInt("afk-view-distance.send-view-distance", 2);
+        restoreStep = plugin.getConfig().getInt("afk-view-distance.restore-step", 2);
+        restoreInterval = plugin.getConfig().getInt("afk-view-distance.restore-interval", 10);
+
+        if (freezeChunks && !VersionUtil.hasPlayerSimulationDistance()) {
+            logger.debug("freeze-chunks: нет Player.setSimulationDistance (нужен Paper 1.18+) — пропускаю");
+        }
+        if (reduceView && !VersionUtil.hasPlayerViewDistance()) {
+            logger.debug("afk-view-distance: нет Player.setSendViewDistance (нужен Paper 1.18+) — пропускаю");
+        }
+    }
+
+    /**
+     * Игрок ушёл в АФК. Вызывается в потоке игрока.
+     */
+    public void apply(Player player, AfkPlayer afkPlayer) {
+        freezeSimulation(player, afkPlayer);
+        reduceView(player, afkPlayer);
+    }
+
+    /**
+     * Вернуть исходные дальности. Вызывается в потоке игрока.
+     */
+    public void restore(Player player, AfkPlayer afkPlayer) {
+        unfreezeSimulation(player, afkPlayer);
+        restoreView(player, afkPlayer);
+    }
+
+    /**
+     * Вернуть всё сразу, без постепенного роста (выключение плагина)
+     */
+    public void restoreNow(Player player, AfkPlayer afkPlayer) {
+        unfreezeSimulation(player, afkPlayer);
+        cancelExpansion(afkPlayer);
+        finishExpansion(player, afkPlayer);
+    }
+
+    /**
+     * Игрок вышел — значения не восстанавливаем, только снимаем его из учёта
+     */
+    public void forget(AfkPlayer afkPlayer) {
+        if (afkPlayer == null) return;
+
+        if (afkPlayer.getWasSimulationDistance() >= 0) {
+            afkPlayer.setWasSimulationDistance(-1);
+            frozenChunks.addAndGet(-afkPlayer.getFrozenChunks());
+            afkPlayer.setFrozenChunks(0);
+        }
+
+        cancelExpansion(afkPlayer);
+        afkPlayer.setWasViewDistance(-1);
+        afkPlayer.setWasSendViewDistance(-1);
+    }
+
+    public long getFrozenChunks() {
+        return frozenChunks.get();
+    }
+
+    // ==================== Симуляция ====================
+
+    private void freezeSimulation(Player player, AfkPlayer afkPlayer) {
+        if (!freezeChunks || !VersionUtil.hasPlayerSimulationDistance()) return;
+        if (afkPlayer.getWasSimulationDistance() >= 0) return;
+
+        int original = player.getSimulationDistance();
+        int target = simulationDistance;
+        if (original <= target) return;
+
+        player.setSimulationDistance(target);
+
+        int freed = area(original) - area(target);
+        afkPlayer.setWasSimulationDistance(original);
+        afkPlayer.setFrozenChunks(freed);
+        long total = frozenChunks.addAndGet(freed);
+
+        logger.debug("Симуляция " + player.getName() + ": " + original + " -> " + target
+                + ", освобождено чанков: " + freed + " (всего: " + total + ")");
+    }
+
+    private void unfreezeSimulation(Player player, AfkPlayer afkPlayer) {
+        int original = afkPlayer.getWasSimulationDistance();
+        if (original < 0) return;
+
+        afkPlayer.setWasSimulationDistance(-1);
+        frozenChunks.addAndGet(-afkPlayer.getFrozenChunks());
+        afkPlayer.setFrozenChunks(0);
+
+        if (player.isOnline()) {
+            player.setSimulationDistance(original);
+        }
+    }
+
+    // ==================== Прорисовка ====================
+
+    private void reduceView(Player player, AfkPlayer afkPlayer) {
+        if (!reduceView || !VersionUtil.hasPlayerViewDistance()) return;
+
+        // Снова ушёл в АФК, пока дальность ещё росла — исходные значения уже сохранены
+        cancelExpansion(afkPlayer);
+        if (afkPlayer.getWasViewDistance() < 0) {
+            afkPlayer.setWasViewDistance(player.getViewDistance());
+            afkPlayer.setWasSendViewDistance(player.getSendViewDistance());
+        }
+
+        // Сначала отправку — она не может быть больше дальности загрузки
+        player.setSendViewDistance(Math.min(sendViewDistance, afkPlayer.getWasSendViewDistance()));
+        player.setViewDistance(Math.min(viewDistance, afkPlayer.getWasViewDistance()));
+
+        logger.debug("Прорисовка " + player.getName() + ": " + afkPlayer.getWasViewDistance()
+                + " -> " + player.getViewDistance());
+    }
+
+    private void restoreView(Player player, AfkPlayer afkPlayer) {
+        if (afkPlayer.getWasViewDistance() < 0) return;
+
+        cancelExpansion(afkPlayer);
+
+        if (restoreStep <= 0 || !player.isOnline()) {
+            finishExpansion(player, afkPlayer);
+            return;
+        }
+
+        afkPlayer.setDistanceRestoreTask(scheduler.runForEntityTimer(player,
+                () -> expandView(player, afkPlayer), restoreInterval, restoreInterval));
+    }
+
+    /**
+     * Один шаг роста дальности. Выполняется таймером в потоке игрока.
+     */
+    private void expandView(Player player, AfkPlayer afkPlayer) {
+        int targetView = afkPlayer.getWasViewDistance();
+        int targetSend = afkPlayer.getWasSendViewDistance();
+
+        if (!player.isOnline() || targetView < 0) {
+            cancelExpansion(afkPlayer);
+            return;
+        }
+
+        // Сначала загрузку — отправка не может её обогнать
+        int view = Math.min(player.getViewDistance() + restoreStep, targetView);
+        int send = Math.min(player.getSendViewDistance() + restoreStep, targetSend);
+        player.setViewDistance(view);
+        player.setSendViewDistance(send);
+
+        if (view >= targetView && send >= targetSend) {
+            cancelExpansion(afkPlayer);
+            afkPlayer.setWasViewDistance(-1);
+            afkPlayer.setWasSendViewDistance(-1);
+        }
+    }
+
+    private void finishExpansion(Player player, AfkPlayer afkPlayer) {
+        int view = afkPlayer.getWasViewDistance();
+        int send = afkPlayer.getWasSendViewDistance();
+        if (view < 0) return;
+
+        afkPlayer.setWasViewDistance(-1);
+        afkPlayer.setWasSendViewDistance(-1);
+
+        if (player.isOnline()) {
+            player.setViewDistance(view);
+            player.setSendViewDistance(send);
+        }
+    }
+
+    private static void cancelExpansion(AfkPlayer afkPlayer) {
+        TaskHandle task = afkPlayer.getDistanceRestoreTask();
+        if (task != null) {
+            task.cancel();
+            afkPlayer.setDistanceRestoreTask(null);
+        }
+    }
+
+    /**
+     * Сколько чанков тикает в квадрате с радиусом distance
+     */
+    private static int area(int distance) {
+        int side = distance * 2 + 1;
+        return side * side;
+    }
+}
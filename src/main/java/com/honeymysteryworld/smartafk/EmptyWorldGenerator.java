@@ -1,19 +1,108 @@
 package com.honeymysteryworld.smartafk;
 
+import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.generator.BiomeProvider;
 import org.bukkit.generator.ChunkGenerator;
+import org.bukkit.generator.WorldInfo;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
+/**
+ * Пустой мир на современном API генератора (1.17.1+).
+ *
+ * Все ванильные стадии выключены, блоки не ставятся, биом — THE_VOID,
+ * точка спавна фиксирована — сервер не ищет её по миру.
+ */
 public class EmptyWorldGenerator extends ChunkGenerator {
 
+    private static final BiomeProvider VOID_BIOMES = new VoidBiomeProvider();
+
+    private final double spawnX;
+    private final double spawnY;
+    private final double spawnZ;
+
+    public EmptyWorldGenerator(double spawnX, double spawnY, double spawnZ) {
+        this.spawnX = spawnX;
+        this.spawnY = spawnY;
+        this.spawnZ = spawnZ;
+    }
+
+    @Override
+    public void generateNoise(WorldInfo worldInfo, Random random, int chunkX, int chunkZ, ChunkData chunkData) {
+        // Пусто
+    }
+
+    @Override
+    public boolean shouldGenerateNoise() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateSurface() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateBedrock() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateCaves() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateDecorations() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateMobs() {
+        return false;
+    }
+
     @Override
-    public ChunkData generateChunkData(World world, Random random, int x, int z, BiomeGrid biome) {
-        return createChunkData(world);
+    public boolean shouldGenerateStructures() {
+        return false;
+    }
+
+    @Override
+    public BiomeProvider getDefaultBiomeProvider(WorldInfo worldInfo) {
+        return VOID_BIOMES;
     }
 
     @Override
     public boolean canSpawn(World world, int x, int z) {
         return true;
     }
-}
\ No newline at end of file
+
+    @Override
+    public Location getFixedSpawnLocation(World world, Random random) {
+        return new Location(world, spawnX, spawnY, spawnZ);
+    }
+
+    @Override
+    public boolean isParallelCapable() {
+        return true;
+    }
+
+    private static final class VoidBiomeProvider extends BiomeProvider {
+
+        private static final List<Biome> BIOMES = Collections.singletonList(Biome.THE_VOID);
+
+        @Override
+        public Biome getBiome(WorldInfo worldInfo, int x, int y, int z) {
+            return Biome.THE_VOID;
+        }
+
+        @Override
+        public List<Biome> getBiomes(WorldInfo worldInfo) {
+            return BIOMES;
+        }
+    }
+}
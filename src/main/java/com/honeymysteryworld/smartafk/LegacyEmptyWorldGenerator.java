@@ -0,0 +1,23 @@
+package com.honeymysteryworld.smartafk;
+
+import org.bukkit.World;
+import org.bukkit.generator.ChunkGenerator;
+
+import java.util.Random;
+
+/**
+ * Пустой мир для ядер до 1.17.1 — там нет generateNoise/shouldGenerate*
+ */
+public class LegacyEmptyWorldGenerator extends ChunkGenerator {
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ChunkData generateChunkData(World world, Random random, int x, int z, BiomeGrid biome) {
+        return createChunkData(world);
+    }
+
+    @Override
+    public boolean canSpawn(World world, int x, int z) {
+        return true;
+    }
+}
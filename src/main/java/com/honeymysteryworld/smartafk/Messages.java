@@ -0,0 +1,115 @@
+package com.honeymysteryworld.smartafk;
+
+import com.honeymysteryworld.smartafk.utils.MessageTemplate;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Все сообщения плагина, разобранные из конфига при загрузке и /afkreload
+ */
+public class Messages {
+
+    private final SmartAFK plugin;
+
+    private volatile MessageTemplate afkOn;
+    private volatile MessageTemplate afkOff;
+    private volatile MessageTemplate afkDigestOn;
+    private volatile MessageTemplate afkDigestOff;
+    private volatile MessageTemplate kickWarning;
+    private volatile MessageTemplate kickMessage;
+    private volatile MessageTemplate tabName;
+    private volatile boolean tabPrefixEnabled;
+    private volatile MessageTemplate noPermission;
+    private volatile MessageTemplate playersOnly;
+    private volatile MessageTemplate reloaded;
+    private volatile MessageTemplate notifyOn;
+    private volatile MessageTemplate notifyOff;
+
+    public Messages(SmartAFK plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+
+    public void reload() {
+        FileConfiguration config = plugin.getConfig();
+        String prefix = config.getString("messages.prefix", "");
+
+        afkOn = broadcast(prefix, config.getString("messages.afk-on", ""));
+        afkOff = broadcast(prefix, config.getString("messages.afk-off", ""));
+        afkDigestOn = digest(prefix, config.getString("messages.afk-digest-on",
+                "&e{count} &fигроков теперь АФК: &e{players}"));
+        afkDigestOff = digest(prefix, config.getString("messages.afk-digest-off",
+                "&e{count} &fигроков вернулись в игру: &e{players}"));
+        kickWarning = MessageTemplate.compile(
+                config.getString("messages.afk-kick-warning", "&cКик через {time} секунд!"), "time");
+        kickMessage = MessageTemplate.compile(config.getString("kick-message", "&cВы были кикнуты за долгий АФК"));
+        tabName = MessageTemplate.compile(
+                config.getString("settings.tab-prefix-format", "&7[AFK] ") + "{player}", "player");
+        tabPrefixEnabled = config.getBoolean("settings.tab-prefix", true);
+        noPermission = MessageTemplate.compile(config.getString("messages.no-permission", "&cНет прав!"));
+        playersOnly = MessageTemplate.compile(config.getString("messages.players-only", "&cТолько для игроков!"));
+        reloaded = MessageTemplate.compile(config.getString("messages.reload", "&aКонфиг перезагружен!"));
+        notifyOn = MessageTemplate.compile(config.getString("messages.notify-on", "&aУведомления об АФК включены"));
+        notifyOff = MessageTemplate.compile(config.getString("messages.notify-off", "&cУведомления об АФК выключены"));
+    }
+
+    /**
+     * Пустое сообщение отключает рассылку — даже если префикс задан
+     */
+    private static MessageTemplate broadcast(String prefix, String message) {
+        if (message == null || message.isEmpty()) return MessageTemplate.compile("");
+        return MessageTemplate.compile(prefix + message, "player");
+    }
+
+    private static MessageTemplate digest(String prefix, String message) {
+        if (message == null || message.isEmpty()) return MessageTemplate.compile("");
+        return MessageTemplate.compile(prefix + message, "count", "players");
+    }
+
+    public MessageTemplate getAfkOn() {
+        return afkOn;
+    }
+
+    public MessageTemplate getAfkOff() {
+        return afkOff;
+    }
+
+    public MessageTemplate getAfkDigestOn() {
+        return afkDigestOn;
+    }
+
+    public MessageTemplate getAfkDigestOff() {
+        return afkDigestOff;
+    }
+
+    public String kickWarning(long seconds) {
+        return kickWarning.render(String.valueOf(seconds));
+    }
+
+    public String kickMessage() {
+        return kickMessage.render();
+    }
+
+    public boolean isTabPrefixEnabled() {
+        return tabPrefixEnabled;
+    }
+
+    public String tabName(String playerName) {
+        return tabName.render(playerName);
+    }
+
+    public String noPermission() {
+        return noPermission.render();
+    }
+
+    public String playersOnly() {
+        return playersOnly.render();
+    }
+
+    public String reloaded() {
+        return reloaded.render();
+    }
+
+    public String notifyToggled(boolean enabled) {
+        return (enabled ? notifyOn : notifyOff).render();
+    }
+}
@@ -0,0 +1,115 @@
+package com.honeymysteryworld.smartafk;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+
+/**
+ * Поиск безопасной точки возврата по неизменяемому снимку чанка.
+ *
+ * Снимок снимается один раз в потоке, владеющем чанком, а сам поиск
+ * можно выполнять в любом потоке — живой мир он не трогает.
+ * Проверяется колонна исходной точки и небольшая спираль соседних колонн
+ * в пределах того же чанка.
+ */
+public final class SafeLocationFinder {
+
+    // Насколько выше/ниже исходной точки ищем
+    private static final int VERTICAL_RANGE = 10;
+
+    // Радиус спирали соседних колонн
+    private static final int SPIRAL_RADIUS = 2;
+
+    // Смещения колонн по порядку обхода: центр, затем кольца наружу
+    private static final int[][] SPIRAL = buildSpiral(SPIRAL_RADIUS);
+
+    private SafeLocationFinder() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * @param snapshot снимок чанка, в котором лежит loc
+     * @param minY     минимальная высота мира
+     * @param maxY     максимальная высота мира (исключительно)
+     * @return безопасная локация или null, если не нашли
+     */
+    public static Location find(ChunkSnapshot snapshot, Location loc, int minY, int maxY) {
+        int baseX = loc.getBlockX();
+        int baseY = loc.getBlockY();
+        int baseZ = loc.getBlockZ();
+        int chunkX = baseX >> 4;
+        int chunkZ = baseZ >> 4;
+
+        for (int[] offset : SPIRAL) {
+            int x = baseX + offset[0];
+            int z = baseZ + offset[1];
+
+            // Соседние колонны — только внутри снятого чанка
+            if (x >> 4 != chunkX || z >> 4 != chunkZ) continue;
+
+            // Сначала выше (включая исходную высоту), потом ниже — как раньше
+            for (int dy = 0; dy < VERTICAL_RANGE; dy++) {
+                if (isSafe(snapshot, x, baseY + dy, z, minY, maxY)) {
+                    return toLocation(loc, offset, dy);
+                }
+            }
+            for (int dy = 1; dy < VERTICAL_RANGE; dy++) {
+                if (isSafe(snapshot, x, baseY - dy, z, minY, maxY)) {
+                    return toLocation(loc, offset, -dy);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Ноги и голова — воздух, под ногами — не воздух, не лава и не огонь
+     */
+    static boolean isSafe(ChunkSnapshot snapshot, int x, int y, int z, int minY, int maxY) {
+        if (y - 1 < minY || y + 1 >= maxY) return false;
+
+        int localX = x & 15;
+        int localZ = z & 15;
+
+        if (!snapshot.getBlockType(localX, y, localZ).isAir()
+                || !snapshot.getBlockType(localX, y + 1, localZ).isAir()) {
+            return false;
+        }
+
+        Material ground = snapshot.getBlockType(localX, y - 1, localZ);
+        return !ground.isAir() && ground != Material.LAVA && ground != Material.FIRE;
+    }
+
+    private static Location toLocation(Location loc, int[] offset, int dy) {
+        Location result = loc.clone();
+
+        // В исходной колонне сохраняем точные координаты, в соседних — центр блока
+        if (offset[0] != 0 || offset[1] != 0) {
+            result.setX(loc.getBlockX() + offset[0] + 0.5);
+            result.setZ(loc.getBlockZ() + offset[1] + 0.5);
+        }
+        result.setY(loc.getBlockY() + dy);
+        return result;
+    }
+
+    private static int[][] buildSpiral(int radius) {
+        int side = radius * 2 + 1;
+        int[][] offsets = new int[side * side][];
+        int index = 0;
+
+        offsets[index++] = new int[]{0, 0};
+
+        for (int ring = 1; ring <= radius; ring++) {
+            for (int dx = -ring; dx <= ring; dx++) {
+                for (int dz = -ring; dz <= ring; dz++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) == ring) {
+                        offsets[index++] = new int[]{dx, dz};
+                    }
+                }
+            }
+        }
+
+        return offsets;
+    }
+}
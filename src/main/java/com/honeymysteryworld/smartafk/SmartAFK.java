@@ -1,21 +1,47 @@
 package com.honeymysteryworld.smartafk;
 
+import com.honeymysteryworld.smartafk.hooks.LuckPermsHook;
 import com.honeymysteryworld.smartafk.listeners.PlayerActivityListener;
+import com.honeymysteryworld.smartafk.network.NetworkReplicator;
+import com.honeymysteryworld.smartafk.network.NetworkView;
+import com.honeymysteryworld.smartafk.profiler.LatencyHistogram;
+import com.honeymysteryworld.smartafk.profiler.Profiler;
+import com.honeymysteryworld.smartafk.scheduler.BukkitTaskScheduler;
+import com.honeymysteryworld.smartafk.scheduler.FoliaTaskScheduler;
+import com.honeymysteryworld.smartafk.scheduler.TaskScheduler;
+import com.honeymysteryworld.smartafk.utils.AnalyticsStore;
 import com.honeymysteryworld.smartafk.utils.BackupManager;
 import com.honeymysteryworld.smartafk.utils.ConfigValidator;
 import com.honeymysteryworld.smartafk.utils.Logger;
 import org.bstats.bukkit.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
-
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class SmartAFK extends JavaPlugin implements TabCompleter {
 
@@ -26,11 +52,51 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
     private Logger logger;
     private ConfigValidator configValidator;
     private BackupManager backupManager;
+    private TaskScheduler taskScheduler;
+    private LuckPermsHook luckPermsHook;
+    private Messages messages;
+    private Profiler profiler;
+    private final Clock clock;
 
     private boolean fullyLoaded = false; // Флаг успешной загрузки
 
+    // Сколько игроков показывать в /afkstatus
+    private static final int STATUS_LIST_LIMIT = 50;
+
+    // /afkstats: период по умолчанию и максимум (дней), размер топа, часов в пиках
+    private static final int STATS_DEFAULT_DAYS = 7;
+    private static final int STATS_MAX_DAYS = 365;
+    private static final int STATS_TOP_LIMIT = 10;
+    private static final int STATS_PEAK_HOURS = 24;
+    private static final DateTimeFormatter STATS_DAY_FORMAT = DateTimeFormatter.ofPattern("dd.MM");
+    private static final DateTimeFormatter STATS_HOUR_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
     private static final int BSTATS_ID = 12345; // Замени на свой ID
 
+    public SmartAFK() {
+        super();
+        this.clock = Clock.systemUTC();
+    }
+
+    /**
+     * Запуск вне сервера (бенчмарки, тесты): Bukkit разрешает этот конструктор,
+     * только если плагин загружен не PluginClassLoader
+     */
+    @SuppressWarnings("deprecation")
+    protected SmartAFK(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        this(loader, description, dataFolder, file, Clock.systemUTC());
+    }
+
+    /**
+     * То же с заданными часами — тесты прокручивают часы АФК вручную
+     */
+    @SuppressWarnings("deprecation")
+    protected SmartAFK(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file,
+                       Clock clock) {
+        super(loader, description, dataFolder, file);
+        this.clock = clock;
+    }
+
     @Override
     public void onEnable() {
         instance = this;
@@ -48,15 +114,36 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
                 logger.warning("Конфиг содержал ошибки и был исправлен");
             }
 
+            // Планировщик: региональный на Folia, обычный на остальных ядрах
+            taskScheduler = VersionUtil.isFolia() ? new FoliaTaskScheduler(this) : new BukkitTaskScheduler(this);
+
+            // Профайлер — до компонентов, которые в нём замеряются
+            profiler = new Profiler(this);
+
+            // Сообщения разбираются один раз, дальше только рендер
+            messages = new Messages(this);
+
             // Бэкап менеджер
             backupManager = new BackupManager(this, logger);
 
             // Менеджер АФК (создаёт мир при инициализации — FIX #2)
-            afkManager = new AfkManager(this, logger, backupManager);
+            afkManager = new AfkManager(this, logger, backupManager, taskScheduler, messages);
 
             // Загружаем бэкап если есть
             backupManager.loadBackup(afkManager.getPlayers());
 
+            // Сброс кэша прав при пересчёте в LuckPerms
+            if (getServer().getPluginManager().getPlugin("LuckPerms") != null) {
+                try {
+                    luckPermsHook = new LuckPermsHook(this, afkManager);
+                    luckPermsHook.register();
+                    logger.debug("LuckPerms найден — кэш прав сбрасывается по событиям");
+                } catch (Throwable e) {
+                    luckPermsHook = null;
+                    logger.warning("Не удалось подключиться к LuckPerms: " + e.getMessage());
+                }
+            }
+
             // Слушатели
             activityListener = new PlayerActivityListener(this, afkManager);
             getServer().getPluginManager().registerEvents(activityListener, this);
@@ -65,6 +152,9 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
             registerCommand("afk");
             registerCommand("afkstatus");
             registerCommand("afkreload");
+            registerCommand("afknotify");
+            registerCommand("afkprofile");
+            registerCommand("afkstats");
 
             // bStats
             if (getConfig().getBoolean("settings.metrics", true)) {
@@ -76,17 +166,6 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
                 }
             }
 
-            // FIX #1: Асинхронное автосохранение бэкапа каждые 5 минут
-            Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
-                try {
-                    if (afkManager != null) {
-                        backupManager.saveBackup(afkManager.getPlayers());
-                    }
-                } catch (Exception e) {
-                    logger.error("Ошибка автосохранения бэкапа", e);
-                }
-            }, 6000L, 6000L);
-
             fullyLoaded = true;
 
             logger.info("SmartAFK v" + getDescription().getVersion() + " загружен!");
@@ -106,11 +185,15 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
     @Override
     public void onDisable() {
         try {
+            if (luckPermsHook != null) {
+                luckPermsHook.unregister();
+                luckPermsHook = null;
+            }
+            // Синхронно дописываем бэкап при выключении (важно сохранить данные)
+            if (backupManager != null) {
+                backupManager.shutdown();
+            }
             if (afkManager != null) {
-                // Синхронный бэкап при выключении (важно сохранить данные)
-                if (backupManager != null) {
-                    backupManager.saveBackup(afkManager.getPlayers());
-                }
                 afkManager.shutdown();
             }
         } catch (Exception e) {
@@ -126,6 +209,8 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
 
         if (logger != null) {
             logger.info("SmartAFK выключен!");
+            // Последним — дописываем файл лога
+            logger.shutdown();
         }
     }
 
@@ -162,6 +247,12 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
                     return handleStatusCommand(sender, args);
                 case "afkreload":
                     return handleReloadCommand(sender, args);
+                case "afknotify":
+                    return handleNotifyCommand(sender, args);
+                case "afkprofile":
+                    return handleProfileCommand(sender, args);
+                case "afkstats":
+                    return handleStatsCommand(sender, args);
                 default:
                     return false;
             }
@@ -176,14 +267,14 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
 
     private boolean handleAfkCommand(CommandSender sender, String[] args) {
         if (!(sender instanceof Player)) {
-            sender.sendMessage(colorize(getMessage("messages.players-only", "&cТолько для игроков!")));
+            sender.sendMessage(messages.playersOnly());
             return true;
         }
 
         Player player = (Player) sender;
 
-        if (!player.hasPermission("smartafk.afk")) {
-            sender.sendMessage(colorize(getMessage("messages.no-permission", "&cНет прав!")));
+        if (!hasPermission(player, AfkPermission.AFK)) {
+            sender.sendMessage(messages.noPermission());
             return true;
         }
 
@@ -198,23 +289,28 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
     }
 
     private boolean handleStatusCommand(CommandSender sender, String[] args) {
-        if (!sender.hasPermission("smartafk.status")) {
-            sender.sendMessage(colorize(getMessage("messages.no-permission", "&cНет прав!")));
+        if (!hasPermission(sender, AfkPermission.STATUS)) {
+            sender.sendMessage(messages.noPermission());
             return true;
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("network")) {
+            return handleNetworkStatus(sender);
+        }
+
         sender.sendMessage(colorize("&6&l══════ АФК Игроки ══════"));
 
         int count = 0;
 
         if (afkManager != null) {
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                AfkPlayer afkPlayer = afkManager.getAfkPlayer(player);
-                if (afkPlayer != null && afkPlayer.isAfk()) {
-                    sender.sendMessage(colorize("&7• &e" + player.getName() +
-                            " &8— &7" + afkPlayer.getAfkDurationFormatted()));
-                    count++;
-                }
+            // Из индекса: уже отсортировано по началу АФК, записи игроков не создаются
+            count = afkManager.getAfkCount();
+            for (AfkIndex.Entry entry : afkManager.getAfkIndex().list(STATUS_LIST_LIMIT)) {
+                sender.sendMessage(colorize("&7• &e" + entry.getName() +
+                        " &8— &7" + entry.getAfkPlayer().getAfkDurationFormatted()));
+            }
+            if (count > STATUS_LIST_LIMIT) {
+                sender.sendMessage(colorize("&7... и ещё " + (count - STATUS_LIST_LIMIT)));
             }
         }
 
@@ -222,6 +318,11 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
             sender.sendMessage(colorize("&7Никто не АФК"));
         } else {
             sender.sendMessage(colorize("&6Всего: &e" + count + " &6игрок(ов)"));
+
+            long frozen = afkManager != null ? afkManager.getFrozenChunks() : 0;
+            if (frozen > 0) {
+                sender.sendMessage(colorize("&6Заморожено чанков: &e~" + frozen));
+            }
         }
 
         sender.sendMessage(colorize("&6&l═════════════════════════"));
@@ -229,9 +330,298 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
         return true;
     }
 
+    /**
+     * /afkstatus network — АФК игроки всех серверов сети по данным репликации
+     */
+    private boolean handleNetworkStatus(CommandSender sender) {
+        NetworkReplicator network = afkManager != null ? afkManager.getNetwork() : null;
+        if (network == null || !network.isEnabled()) {
+            sender.sendMessage(colorize("&cРепликация выключена &7(network.enabled в конфиге)"));
+            return true;
+        }
+
+        sender.sendMessage(colorize("&6&l══════ АФК в сети ══════"));
+
+        // Этот сервер — из индекса, остальные — из событий репликации
+        sender.sendMessage(colorize("&e" + network.getServerId() + " &7(этот сервер)&8: &f" + afkManager.getAfkCount()));
+        Map<String, Integer> byServer = new TreeMap<>(network.getView().getAfkCountByServer());
+        for (Map.Entry<String, Integer> server : byServer.entrySet()) {
+            sender.sendMessage(colorize("&e" + server.getKey() + "&8: &f" + server.getValue()));
+        }
+
+        List<NetworkView.Entry> entries = new ArrayList<>(network.getView().getEntries());
+        for (AfkIndex.Entry entry : afkManager.getAfkIndex().list(STATUS_LIST_LIMIT)) {
+            entries.add(new NetworkView.Entry(network.getServerId(), entry.getUuid(), entry.getName(),
+                    entry.getAfkStartTime()));
+        }
+        entries.sort(Comparator.comparingLong(NetworkView.Entry::getAfkStartTime));
+
+        long now = clock.millis();
+        for (NetworkView.Entry entry : entries.subList(0, Math.min(entries.size(), STATUS_LIST_LIMIT))) {
+            sender.sendMessage(colorize("&7• &e" + entry.getName() + " &8[" + entry.getServerId() + "] &8— &7"
+                    + AfkPlayer.formatDuration(Math.max(0L, now - entry.getAfkStartTime()))));
+        }
+
+        int total = network.getNetworkAfkCount();
+        if (total > STATUS_LIST_LIMIT) {
+            sender.sendMessage(colorize("&7... и ещё " + (total - STATUS_LIST_LIMIT)));
+        }
+        sender.sendMessage(colorize("&6Всего в сети: &e" + total + " &6игрок(ов)"));
+        sender.sendMessage(colorize("&6&l═════════════════════════"));
+        return true;
+    }
+
+    private boolean handleNotifyCommand(CommandSender sender, String[] args) {
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(messages.playersOnly());
+            return true;
+        }
+
+        Player player = (Player) sender;
+
+        if (!hasPermission(player, AfkPermission.NOTIFY)) {
+            sender.sendMessage(messages.noPermission());
+            return true;
+        }
+
+        if (afkManager != null) {
+            boolean muted = afkManager.toggleBroadcasts(player);
+            sender.sendMessage(messages.notifyToggled(!muted));
+        }
+
+        return true;
+    }
+
+    private boolean handleProfileCommand(CommandSender sender, String[] args) {
+        if (!hasPermission(sender, AfkPermission.PROFILE)) {
+            sender.sendMessage(messages.noPermission());
+            return true;
+        }
+
+        if (args.length > 0) {
+            switch (args[0].toLowerCase(Locale.ROOT)) {
+                case "on":
+                    profiler.setEnabled(true);
+                    sender.sendMessage(colorize("&aПрофайлер включён"));
+                    return true;
+                case "off":
+                    profiler.setEnabled(false);
+                    sender.sendMessage(colorize("&cПрофайлер выключен &7(данные сохранены до следующего включения)"));
+                    return true;
+                case "reset":
+                    profiler.reset();
+                    sender.sendMessage(colorize("&aДанные профайлера сброшены"));
+                    return true;
+                default:
+                    sender.sendMessage(colorize("&cИспользование: /afkprofile [on|off|reset]"));
+                    return true;
+            }
+        }
+
+        long elapsed = profiler.getElapsedMillis();
+        sender.sendMessage(colorize("&6&l══════ Профайлер SmartAFK ══════"));
+        sender.sendMessage(colorize("&7Статус: " + (profiler.isEnabled() ? "&aвключён" : "&cвыключен")
+                + " &7| собрано за " + (elapsed / 1000) + " с"));
+
+        boolean any = false;
+        for (Profiler.Probe probe : Profiler.Probe.values()) {
+            LatencyHistogram histogram = profiler.getHistogram(probe);
+            if (histogram.getCount() == 0) continue;
+
+            any = true;
+            sender.sendMessage(colorize("&e" + probe.getDisplayName() + "&7: "
+                    + String.format(Locale.ROOT, "%.1f", profiler.getRate(probe)) + "/с"
+                    + " &8| &7p50 &f" + formatNanos(histogram.getPercentile(50))
+                    + " &7p99 &f" + formatNanos(histogram.getPercentile(99))
+                    + " &7max &f" + formatNanos(histogram.getMax())));
+        }
+
+        if (!any) {
+            sender.sendMessage(colorize(profiler.isEnabled() ? "&7Пока нет данных" : "&7Нет данных — /afkprofile on"));
+        } else {
+            sender.sendMessage(colorize("&6Нагрузка на тик: &e" + formatNanos(profiler.getNanosPerTick())
+                    + " &7(" + String.format(Locale.ROOT, "%.3f", profiler.getTickShare()) + "% от 50 мс)"));
+        }
+
+        sender.sendMessage(colorize("&6&l═════════════════════════"));
+        return true;
+    }
+
+    /**
+     * /afkstats — ответ считает поток аналитики, сюда возвращаемся только отправить строки
+     */
+    private boolean handleStatsCommand(CommandSender sender, String[] args) {
+        if (!hasPermission(sender, AfkPermission.STATS)) {
+            sender.sendMessage(messages.noPermission());
+            return true;
+        }
+
+        AnalyticsStore analytics = afkManager != null ? afkManager.getAnalytics() : null;
+        if (analytics == null || !analytics.isEnabled()) {
+            sender.sendMessage(colorize("&cАналитика выключена &7(analytics.enabled в конфиге)"));
+            return true;
+        }
+
+        if (args.length == 0) {
+            sender.sendMessage(colorize("&cИспользование: /afkstats <игрок|top> [дней] или /afkstats peak"));
+            return true;
+        }
+
+        int days = STATS_DEFAULT_DAYS;
+        if (args.length > 1) {
+            try {
+                days = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                days = 0;
+            }
+            if (days < 1 || days > STATS_MAX_DAYS) {
+                sender.sendMessage(colorize("&cЧисло дней: от 1 до " + STATS_MAX_DAYS));
+                return true;
+            }
+        }
+
+        switch (args[0].toLowerCase(Locale.ROOT)) {
+            case "top":
+                int period = days;
+                analytics.getTop(period, STATS_TOP_LIMIT).whenComplete((top, error) ->
+                        reply(sender, error, () -> formatTop(top, period)));
+                return true;
+            case "peak":
+                analytics.getHourlyPeaks(STATS_PEAK_HOURS).whenComplete((peaks, error) ->
+                        reply(sender, error, () -> formatPeaks(peaks)));
+                return true;
+            default:
+                requestPlayerStats(sender, analytics, args[0], days);
+                return true;
+        }
+    }
+
+    private void requestPlayerStats(CommandSender sender, AnalyticsStore analytics, String name, int days) {
+        Player online = Bukkit.getPlayerExact(name);
+        if (online != null) {
+            AfkPlayer afkPlayer = afkManager.peekAfkPlayer(online);
+            long ongoing = afkPlayer != null && afkPlayer.isAfk() ? afkPlayer.getAfkStartTime() : 0L;
+            analytics.getPlayerStats(online.getUniqueId(), days, ongoing).whenComplete((stats, error) ->
+                    reply(sender, error, () -> formatPlayerStats(online.getName(), stats)));
+            return;
+        }
+
+        // Оффлайн игрока ищем вне тика: getOfflinePlayer по нику может сходить в сеть
+        taskScheduler.runAsync(() -> {
+            @SuppressWarnings("deprecation")
+            OfflinePlayer offline = Bukkit.getOfflinePlayer(name);
+            if (!offline.hasPlayedBefore()) {
+                reply(sender, Collections.singletonList("&cИгрок " + name + " не найден"));
+                return;
+            }
+
+            String displayName = offline.getName() != null ? offline.getName() : name;
+            analytics.getPlayerStats(offline.getUniqueId(), days, 0L).whenComplete((stats, error) ->
+                    reply(sender, error, () -> formatPlayerStats(displayName, stats)));
+        });
+    }
+
+    private List<String> formatPlayerStats(String name, AnalyticsStore.DailyStats stats) {
+        List<String> lines = new ArrayList<>();
+        long[] seconds = stats.getSeconds();
+        lines.add("&6&l══════ АФК: " + name + " ══════");
+
+        for (int i = 0; i < seconds.length; i++) {
+            // За длинный период — только дни, когда игрок был в АФК
+            if (seconds[i] == 0 && seconds.length > STATS_DEFAULT_DAYS) continue;
+            lines.add("&7" + STATS_DAY_FORMAT.format(stats.getFrom().plusDays(i)) + " &8— &f"
+                    + AfkPlayer.formatDuration(seconds[i] * 1000));
+        }
+
+        lines.add("&6Всего за " + seconds.length + " дн.: &e" + AfkPlayer.formatDuration(stats.getTotal() * 1000));
+        lines.add("&6&l═════════════════════════");
+        return lines;
+    }
+
+    private List<String> formatTop(List<AnalyticsStore.TopEntry> top, int days) {
+        List<String> lines = new ArrayList<>();
+        lines.add("&6&l══════ Топ АФК за " + days + " дн. ══════");
+
+        if (top.isEmpty()) {
+            lines.add("&7Нет данных");
+        }
+
+        int place = 1;
+        for (AnalyticsStore.TopEntry entry : top) {
+            String name = Bukkit.getOfflinePlayer(entry.getUuid()).getName();
+            lines.add("&7" + place++ + ". &e" + (name != null ? name : entry.getUuid().toString())
+                    + " &8— &f" + AfkPlayer.formatDuration(entry.getSeconds() * 1000));
+        }
+
+        lines.add("&6&l═════════════════════════");
+        return lines;
+    }
+
+    private List<String> formatPeaks(int[] peaks) {
+        List<String> lines = new ArrayList<>();
+        lines.add("&6&l══════ Пик АФК по часам ══════");
+
+        // Часы отсчитываются от эпохи, подписи — в часовом поясе сервера
+        ZoneId zone = ZoneId.systemDefault();
+        long currentHour = TimeUnit.MILLISECONDS.toHours(clock.millis());
+        StringBuilder row = new StringBuilder();
+        int max = 0;
+
+        for (int i = 0; i < peaks.length; i++) {
+            long hour = currentHour - peaks.length + 1 + i;
+            String label = STATS_HOUR_FORMAT.format(Instant.ofEpochMilli(TimeUnit.HOURS.toMillis(hour)).atZone(zone));
+            row.append("&7").append(label).append(" &f").append(peaks[i]).append("  ");
+            max = Math.max(max, peaks[i]);
+
+            // По 6 часов в строке
+            if ((i + 1) % 6 == 0 || i == peaks.length - 1) {
+                lines.add(row.toString().trim());
+                row.setLength(0);
+            }
+        }
+
+        lines.add("&6Максимум за " + peaks.length + " ч: &e" + max);
+        lines.add("&6&l═════════════════════════");
+        return lines;
+    }
+
+    /**
+     * Ответ из фонового потока: игроку — в его потоке, консоли — сразу
+     */
+    private void reply(CommandSender sender, Throwable error, Supplier<List<String>> lines) {
+        if (error != null) {
+            if (logger != null) {
+                logger.error("Ошибка запроса аналитики", error);
+            }
+            reply(sender, Collections.singletonList("&cОшибка запроса аналитики! Проверьте консоль."));
+            return;
+        }
+        reply(sender, lines.get());
+    }
+
+    private void reply(CommandSender sender, List<String> lines) {
+        Runnable send = () -> {
+            for (String line : lines) {
+                sender.sendMessage(colorize(line));
+            }
+        };
+
+        if (sender instanceof Player) {
+            taskScheduler.executeForEntity((Player) sender, send);
+        } else {
+            send.run();
+        }
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000L) return nanos + " нс";
+        if (nanos < 1_000_000L) return String.format(Locale.ROOT, "%.1f мкс", nanos / 1_000.0);
+        return String.format(Locale.ROOT, "%.2f мс", nanos / 1_000_000.0);
+    }
+
     private boolean handleReloadCommand(CommandSender sender, String[] args) {
-        if (!sender.hasPermission("smartafk.reload")) {
-            sender.sendMessage(colorize(getMessage("messages.no-permission", "&cНет прав!")));
+        if (!hasPermission(sender, AfkPermission.RELOAD)) {
+            sender.sendMessage(messages.noPermission());
             return true;
         }
 
@@ -248,6 +638,12 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
             if (logger != null) {
                 logger.reload();
             }
+            if (messages != null) {
+                messages.reload();
+            }
+            if (profiler != null) {
+                profiler.reload();
+            }
             if (backupManager != null) {
                 backupManager.reload();
             }
@@ -258,7 +654,7 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
                 activityListener.reloadSettings();
             }
 
-            sender.sendMessage(colorize(getMessage("messages.reload", "&aКонфиг перезагружен!")));
+            sender.sendMessage(messages.reloaded());
 
             if (logger != null) {
                 logger.info("Конфиг перезагружен игроком " + sender.getName());
@@ -274,8 +670,36 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
         return true;
     }
 
+    /**
+     * Команды — не горячий путь: право проверяем напрямую, без кэша
+     */
+    private boolean hasPermission(CommandSender sender, AfkPermission permission) {
+        return sender.hasPermission(permission.getNode());
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (command.getName().equalsIgnoreCase("afkprofile") && args.length == 1) {
+            String prefix = args[0].toLowerCase(Locale.ROOT);
+            return Arrays.asList("on", "off", "reset").stream()
+                    .filter(option -> option.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+        if (command.getName().equalsIgnoreCase("afkstats") && args.length == 1) {
+            String prefix = args[0].toLowerCase(Locale.ROOT);
+            List<String> options = new ArrayList<>();
+            for (String option : Arrays.asList("top", "peak")) {
+                if (option.startsWith(prefix)) options.add(option);
+            }
+            for (Player player : getServer().getOnlinePlayers()) {
+                if (player.getName().toLowerCase(Locale.ROOT).startsWith(prefix)) options.add(player.getName());
+            }
+            return options;
+        }
+        if (command.getName().equalsIgnoreCase("afkstatus") && args.length == 1
+                && "network".startsWith(args[0].toLowerCase(Locale.ROOT))) {
+            return Collections.singletonList("network");
+        }
         return Collections.emptyList();
     }
 
@@ -289,6 +713,25 @@ public class SmartAFK extends JavaPlugin implements TabCompleter {
         return afkManager;
     }
 
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+
+    public Messages getMessages() {
+        return messages;
+    }
+
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Часы для таймаутов АФК
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
     public Logger getPluginLogger() {
         return logger;
     }
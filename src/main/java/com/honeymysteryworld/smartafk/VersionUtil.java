@@ -1,6 +1,7 @@
 package com.honeymysteryworld.smartafk;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 
 public final class VersionUtil {
 
@@ -13,6 +14,10 @@ public final class VersionUtil {
     private static final boolean HAS_FORCE_LOADED;
     private static final boolean HAS_GAME_RULE_ENUM;
     private static final boolean HAS_ADVENTURE_API;
+    private static final boolean HAS_ASYNC_TELEPORT;
+    private static final boolean HAS_ASYNC_CHUNKS;
+    private static final boolean HAS_PLAYER_SIMULATION_DISTANCE;
+    private static final boolean HAS_PLAYER_VIEW_DISTANCE;
     private static final boolean IS_FOLIA;
     private static final boolean IS_PAPER;
 
@@ -54,12 +59,13 @@ public final class VersionUtil {
         HAS_FORCE_LOADED = MAJOR_VERSION >= 14;
         HAS_GAME_RULE_ENUM = MAJOR_VERSION >= 13;
         HAS_ADVENTURE_API = checkClass("net.kyori.adventure.text.Component");
+        HAS_ASYNC_TELEPORT = checkMethod("org.bukkit.entity.Entity", "teleportAsync", Location.class);
+        HAS_ASYNC_CHUNKS = checkMethod("org.bukkit.World", "getChunkAtAsync", int.class, int.class);
+        HAS_PLAYER_SIMULATION_DISTANCE = checkMethod("org.bukkit.entity.Player", "setSimulationDistance", int.class);
+        HAS_PLAYER_VIEW_DISTANCE = checkMethod("org.bukkit.entity.Player", "setSendViewDistance", int.class);
 
-        // FIX #3: Предупреждение о Folia
         if (IS_FOLIA) {
-            Bukkit.getLogger().warning("[SmartAFK] ⚠ Обнаружен Folia сервер!");
-            Bukkit.getLogger().warning("[SmartAFK] ⚠ Плагин может работать нестабильно!");
-            Bukkit.getLogger().warning("[SmartAFK] ⚠ Рекомендуется использовать Paper или Spigot.");
+            Bukkit.getLogger().info("[SmartAFK] Обнаружен Folia сервер — используется региональный планировщик");
         }
     }
 
@@ -80,6 +86,18 @@ public final class VersionUtil {
         }
     }
 
+    /**
+     * Проверка наличия метода (API Paper может отсутствовать на Spigot)
+     */
+    private static boolean checkMethod(String className, String methodName, Class<?>... parameterTypes) {
+        try {
+            Class.forName(className).getMethod(methodName, parameterTypes);
+            return true;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     /**
      * FIX #2: Надёжное определение типа сервера
      */
@@ -212,7 +230,35 @@ public final class VersionUtil {
     }
 
     /**
-     * Это Folia сервер (⚠ плагин может работать нестабильно)
+     * Есть Entity.teleportAsync (Paper)
+     */
+    public static boolean hasAsyncTeleport() {
+        return HAS_ASYNC_TELEPORT;
+    }
+
+    /**
+     * Есть World.getChunkAtAsync (Paper)
+     */
+    public static boolean hasAsyncChunks() {
+        return HAS_ASYNC_CHUNKS;
+    }
+
+    /**
+     * Есть Player.setSimulationDistance (Paper 1.18+)
+     */
+    public static boolean hasPlayerSimulationDistance() {
+        return HAS_PLAYER_SIMULATION_DISTANCE;
+    }
+
+    /**
+     * Есть Player.setViewDistance / setSendViewDistance (Paper 1.18+)
+     */
+    public static boolean hasPlayerViewDistance() {
+        return HAS_PLAYER_VIEW_DISTANCE;
+    }
+
+    /**
+     * Это Folia сервер (задачи игроков идут через региональный планировщик)
      */
     public static boolean isFolia() {
         return IS_FOLIA;
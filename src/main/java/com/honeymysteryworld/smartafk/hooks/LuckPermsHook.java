@@ -0,0 +1,40 @@
+package com.honeymysteryworld.smartafk.hooks;
+
+import com.honeymysteryworld.smartafk.AfkManager;
+import com.honeymysteryworld.smartafk.SmartAFK;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+
+/**
+ * Сброс кэша прав при пересчёте данных игрока в LuckPerms.
+ *
+ * Класс загружается только если LuckPerms установлен.
+ */
+public class LuckPermsHook {
+
+    private final SmartAFK plugin;
+    private final AfkManager afkManager;
+    private EventSubscription<UserDataRecalculateEvent> subscription;
+
+    public LuckPermsHook(SmartAFK plugin, AfkManager afkManager) {
+        this.plugin = plugin;
+        this.afkManager = afkManager;
+    }
+
+    public void register() {
+        LuckPerms api = LuckPermsProvider.get();
+
+        // Событие приходит асинхронно — сброс кэша это просто запись volatile поля
+        subscription = api.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class,
+                event -> afkManager.invalidatePermissions(event.getUser().getUniqueId()));
+    }
+
+    public void unregister() {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+    }
+}
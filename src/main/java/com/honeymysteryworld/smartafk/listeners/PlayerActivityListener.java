@@ -1,8 +1,12 @@
 package com.honeymysteryworld.smartafk.listeners;
 
+import com.honeymysteryworld.smartafk.AfkMachineDetector;
 import com.honeymysteryworld.smartafk.AfkManager;
 import com.honeymysteryworld.smartafk.AfkPlayer;
 import com.honeymysteryworld.smartafk.SmartAFK;
+import com.honeymysteryworld.smartafk.VersionUtil;
+import com.honeymysteryworld.smartafk.profiler.Profiler;
+import com.honeymysteryworld.smartafk.profiler.Profiler.Probe;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -18,6 +22,8 @@ public class PlayerActivityListener implements Listener {
 
     private final SmartAFK plugin;
     private final AfkManager afkManager;
+    private final AfkMachineDetector machineDetector;
+    private final Profiler profiler;
 
     // Кэш настроек
     private boolean detectMovement;
@@ -34,6 +40,8 @@ public class PlayerActivityListener implements Listener {
     public PlayerActivityListener(SmartAFK plugin, AfkManager afkManager) {
         this.plugin = plugin;
         this.afkManager = afkManager;
+        this.machineDetector = afkManager.getMachineDetector();
+        this.profiler = plugin.getProfiler();
         reloadSettings();
     }
 
@@ -69,39 +77,114 @@ public class PlayerActivityListener implements Listener {
         }
     }
 
-    // ==================== БЛОКИРОВКА ДВИЖЕНИЯ В АФК ====================
+    /**
+     * То же с замером для /afkprofile
+     */
+    private void safeUpdateActivity(Player player, Probe probe) {
+        long start = profiler.start();
+        safeUpdateActivity(player);
+        profiler.stop(probe, start);
+    }
+
+    private void safeUpdateActivity(Player player, AfkPlayer afkPlayer) {
+        try {
+            afkManager.updateActivity(player, afkPlayer);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Ошибка обновления активности: " + e.getMessage());
+        }
+    }
+
+    // ==================== ДВИЖЕНИЕ ====================
 
     /**
+     * Блокировка движения АФК игроков. На LOWEST — остальные плагины
+     * уже видят игрока на месте. Пока никто не АФК, выходим сразу.
+     *
      * FIX #3: Исправлено дёрганье камеры + разрешаем движение для выхода из АФК
      */
     @EventHandler(priority = EventPriority.LOWEST)
     public void onAfkMove(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
-        AfkPlayer afkPlayer = afkManager.getAfkPlayer(player);
+        if (!afkManager.hasAfkPlayers()) return;
 
-        if (afkPlayer == null || !afkPlayer.isAfk()) return;
+        long start = profiler.start();
+        handleAfkMove(event);
+        profiler.stop(Probe.AFK_MOVE, start);
+    }
 
-        Location from = event.getFrom();
+    private void handleAfkMove(PlayerMoveEvent event) {
         Location to = event.getTo();
-
         if (to == null) return;
 
-        // Проверяем реальное перемещение (не только поворот головы)
+        // Проверяем реальное перемещение (не только поворот головы) —
+        // до поиска в карте, повороты приходят чаще шагов
+        Location from = event.getFrom();
         boolean hasMoved = from.getX() != to.getX() ||
                 from.getY() != to.getY() ||
                 from.getZ() != to.getZ();
 
-        if (hasMoved) {
-            // Игрок пытается двигаться — выводим из АФК
-            safeUpdateActivity(player);
+        if (!hasMoved) return;
 
-            // Если всё ещё в АФК (например, ошибка) — блокируем движение
-            // FIX: Используем clone() чтобы не модифицировать оригинал
-            if (afkPlayer.isAfk()) {
-                Location safeLoc = from.clone();
-                safeLoc.setDirection(to.getDirection());
-                event.setTo(safeLoc);
-            }
+        Player player = event.getPlayer();
+        AfkPlayer afkPlayer = afkManager.peekAfkPlayer(player);
+        if (afkPlayer == null || !afkPlayer.isAfk()) return;
+
+        // Игрок пытается двигаться — выводим из АФК. Если его несёт машина,
+        // вернуться можно поворотом камеры
+        boolean lookChanged = from.getYaw() != to.getYaw() || from.getPitch() != to.getPitch();
+        if (machineDetector.acceptAfkMove(afkPlayer, lookChanged)) {
+            safeUpdateActivity(player, afkPlayer);
+        }
+
+        // Если всё ещё в АФК (например, ошибка) — блокируем движение
+        // FIX: Используем clone() чтобы не модифицировать оригинал
+        if (afkPlayer.isAfk()) {
+            Location safeLoc = from.clone();
+            safeLoc.setYaw(to.getYaw());
+            safeLoc.setPitch(to.getPitch());
+            event.setTo(safeLoc);
+        }
+    }
+
+    /**
+     * Активность от перемещения — только если движение никто не отменил.
+     *
+     * Горячий путь: пока игрок в том же блоке — ни поиска в карте,
+     * ни аллокаций. Перемещения, похожие на АФК-машину, не засчитываются.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        if (!detectMovement) return;
+
+        long start = profiler.start();
+        handleMove(event);
+        profiler.stop(Probe.MOVE, start);
+    }
+
+    private void handleMove(PlayerMoveEvent event) {
+        Location to = event.getTo();
+        if (to == null) return;
+
+        Location from = event.getFrom();
+        int toBlockX = to.getBlockX();
+        int toBlockY = to.getBlockY();
+        int toBlockZ = to.getBlockZ();
+
+        // Реальное перемещение между блоками
+        if (from.getBlockX() == toBlockX &&
+                from.getBlockY() == toBlockY &&
+                from.getBlockZ() == toBlockZ) return;
+
+        Player player = event.getPlayer();
+        AfkPlayer afkPlayer = afkManager.peekAfkPlayer(player);
+
+        if (afkPlayer == null) {
+            safeUpdateActivity(player);
+        } else if (!afkPlayer.isAfk()
+                && afkPlayer.moveToBlock(toBlockX, toBlockY, toBlockZ)
+                && machineDetector.acceptMove(player, afkPlayer, toBlockX, toBlockY, toBlockZ,
+                to.getYaw(), to.getPitch())) {
+            // АФК игроков ведёт onAfkMove
+            safeUpdateActivity(player, afkPlayer);
         }
     }
 
@@ -109,16 +192,24 @@ public class PlayerActivityListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent event) {
+        long start = profiler.start();
         try {
             Player player = event.getPlayer();
+            boolean restoring = afkManager.handlePlayerJoin(player);
             AfkPlayer afkPlayer = afkManager.getAfkPlayer(player);
 
-            // Проверяем — если игрок в АФК мире, но не в статусе АФК (после краша)
-            if (isInAfkWorld(player) && (afkPlayer == null || !afkPlayer.isAfk())) {
+            // Проверяем — если игрок в АФК мире, но не в статусе АФК (после краша).
+            // Возврат по бэкапу уже ведёт его на сохранённое место — второй телепорт не нужен
+            if (!restoring && isInAfkWorld(player) && (afkPlayer == null || !afkPlayer.isAfk())) {
                 // Телепортируем на спавн
-                plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+                plugin.getTaskScheduler().runForEntityLater(player, () -> {
                     if (player.isOnline() && isInAfkWorld(player)) {
-                        player.teleport(plugin.getServer().getWorlds().get(0).getSpawnLocation());
+                        Location spawn = plugin.getServer().getWorlds().get(0).getSpawnLocation();
+                        if (VersionUtil.hasAsyncTeleport()) {
+                            player.teleportAsync(spawn);
+                        } else {
+                            player.teleport(spawn);
+                        }
                         plugin.getLogger().info("Игрок " + player.getName() + " был в АФК мире без статуса — телепортирован на спавн");
                     }
                 }, 5L);
@@ -126,32 +217,18 @@ public class PlayerActivityListener implements Listener {
         } catch (Exception e) {
             plugin.getLogger().warning("Ошибка при входе игрока: " + e.getMessage());
         }
+        profiler.stop(Probe.JOIN, start);
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onQuit(PlayerQuitEvent event) {
+        long start = profiler.start();
         try {
             afkManager.handlePlayerQuit(event.getPlayer());
         } catch (Exception e) {
             plugin.getLogger().warning("Ошибка при выходе игрока: " + e.getMessage());
         }
-    }
-
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onMove(PlayerMoveEvent event) {
-        if (!detectMovement) return;
-
-        Location to = event.getTo();
-        if (to == null) return;
-
-        Location from = event.getFrom();
-
-        // Проверяем реальное перемещение между блоками
-        if (from.getBlockX() != to.getBlockX() ||
-                from.getBlockY() != to.getBlockY() ||
-                from.getBlockZ() != to.getBlockZ()) {
-            safeUpdateActivity(event.getPlayer());
-        }
+        profiler.stop(Probe.QUIT, start);
     }
 
     /**
@@ -163,7 +240,7 @@ public class PlayerActivityListener implements Listener {
 
         final Player player = event.getPlayer();
 
-        plugin.getServer().getScheduler().runTask(plugin, () -> safeUpdateActivity(player));
+        plugin.getTaskScheduler().runForEntity(player, () -> safeUpdateActivity(player, Probe.CHAT));
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
@@ -175,25 +252,39 @@ public class PlayerActivityListener implements Listener {
         // Игнорируем команды плагина
         if (cmd.startsWith("/afk")) return;
 
-        safeUpdateActivity(event.getPlayer());
+        safeUpdateActivity(event.getPlayer(), Probe.COMMAND);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
         if (!detectBlockBreak) return;
-        safeUpdateActivity(event.getPlayer());
+        safeUpdateActivity(event.getPlayer(), Probe.BLOCK_BREAK);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
         if (!detectBlockPlace) return;
-        safeUpdateActivity(event.getPlayer());
+        safeUpdateActivity(event.getPlayer(), Probe.BLOCK_PLACE);
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onInteract(PlayerInteractEvent event) {
         if (!detectInteract) return;
-        safeUpdateActivity(event.getPlayer());
+        handleInteract(event.getPlayer());
+    }
+
+    /**
+     * Клик засчитывается, если не похож на автокликер
+     */
+    private void handleInteract(Player player) {
+        long start = profiler.start();
+        AfkPlayer afkPlayer = afkManager.peekAfkPlayer(player);
+        if (afkPlayer == null) {
+            safeUpdateActivity(player);
+        } else if (machineDetector.acceptInteract(player, afkPlayer)) {
+            safeUpdateActivity(player, afkPlayer);
+        }
+        profiler.stop(Probe.INTERACT, start);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -201,20 +292,21 @@ public class PlayerActivityListener implements Listener {
         if (!detectInventory) return;
 
         if (event.getWhoClicked() instanceof Player) {
-            safeUpdateActivity((Player) event.getWhoClicked());
+            safeUpdateActivity((Player) event.getWhoClicked(), Probe.INVENTORY);
         }
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onInteractEntity(PlayerInteractEntityEvent event) {
         if (!detectInteract) return;
-        safeUpdateActivity(event.getPlayer());
+        handleInteract(event.getPlayer());
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onDamage(EntityDamageEvent event) {
         if (!(event.getEntity() instanceof Player)) return;
 
+        long start = profiler.start();
         Player player = (Player) event.getEntity();
         AfkPlayer afkPlayer = afkManager.getAfkPlayer(player);
 
@@ -225,11 +317,12 @@ public class PlayerActivityListener implements Listener {
         if (afkPlayer != null && afkPlayer.isAfk() && disableDamage) {
             event.setCancelled(true);
         }
+        profiler.stop(Probe.DAMAGE, start);
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onRespawn(PlayerRespawnEvent event) {
-        safeUpdateActivity(event.getPlayer());
+        safeUpdateActivity(event.getPlayer(), Probe.RESPAWN);
     }
 
     /**
@@ -250,9 +343,9 @@ public class PlayerActivityListener implements Listener {
         // Если телепортируемся ИЗ афк мира — снимаем АФК статус
         if (isInAfkWorld(player)) {
             // Используем отложенную задачу, чтобы телепорт успел завершиться
-            plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            plugin.getTaskScheduler().runForEntityLater(player, () -> {
                 if (player.isOnline()) {
-                    safeUpdateActivity(player);
+                    safeUpdateActivity(player, Probe.TELEPORT_EVENT);
                 }
             }, 1L);
             return;
@@ -260,7 +353,7 @@ public class PlayerActivityListener implements Listener {
 
         // Обычный телепорт — обновляем активность
         if (detectMovement) {
-            safeUpdateActivity(player);
+            safeUpdateActivity(player, Probe.TELEPORT_EVENT);
         }
     }
 
@@ -269,8 +362,12 @@ public class PlayerActivityListener implements Listener {
      */
     @EventHandler(priority = EventPriority.MONITOR)
     public void onWorldChange(PlayerChangedWorldEvent event) {
+        long start = profiler.start();
         Player player = event.getPlayer();
 
+        // Права могут зависеть от мира
+        afkManager.invalidatePermissions(player.getUniqueId());
+
         // Если вышел из АФК мира — точно снимаем статус
         if (event.getFrom().getName().equals(afkWorldName)) {
             AfkPlayer afkPlayer = afkManager.getAfkPlayer(player);
@@ -278,5 +375,6 @@ public class PlayerActivityListener implements Listener {
                 safeUpdateActivity(player);
             }
         }
+        profiler.stop(Probe.WORLD_CHANGE, start);
     }
 }
\ No newline at end of file
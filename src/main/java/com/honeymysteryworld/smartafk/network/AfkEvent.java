@@ -0,0 +1,136 @@
+package com.honeymysteryworld.smartafk.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Событие репликации АФК статуса между серверами.
+ *
+ * Формат: версия, тип, id сервера, время события, затем для AFK и BACK —
+ * UUID игрока, для AFK ещё и ник. Переход одного игрока — несколько десятков байт.
+ */
+public final class AfkEvent {
+
+    private static final byte VERSION = 1;
+
+    public enum Type {
+        /** Сервер (пере)запустился или выключается — забыть всех его игроков */
+        RESET,
+        /** Игрок ушёл в АФК, timestamp — начало АФК */
+        AFK,
+        /** Игрок вернулся или вышел с сервера */
+        BACK,
+        /** Сервер жив */
+        HEARTBEAT
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final Type type;
+    private final String serverId;
+    private final long timestamp;
+    private final UUID uuid;
+    private final String name;
+
+    private AfkEvent(Type type, String serverId, long timestamp, UUID uuid, String name) {
+        this.type = type;
+        this.serverId = serverId;
+        this.timestamp = timestamp;
+        this.uuid = uuid;
+        this.name = name;
+    }
+
+    public static AfkEvent reset(String serverId, long timestamp) {
+        return new AfkEvent(Type.RESET, serverId, timestamp, null, null);
+    }
+
+    public static AfkEvent afk(String serverId, long since, UUID uuid, String name) {
+        return new AfkEvent(Type.AFK, serverId, since, uuid, name);
+    }
+
+    public static AfkEvent back(String serverId, long timestamp, UUID uuid) {
+        return new AfkEvent(Type.BACK, serverId, timestamp, uuid, null);
+    }
+
+    public static AfkEvent heartbeat(String serverId, long timestamp) {
+        return new AfkEvent(Type.HEARTBEAT, serverId, timestamp, null, null);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(type.ordinal());
+            out.writeUTF(serverId);
+            out.writeLong(timestamp);
+
+            if (type == Type.AFK || type == Type.BACK) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+            if (type == Type.AFK) {
+                out.writeUTF(name);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream не бросает
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException сообщение обрезано или другой версии
+     */
+    public static AfkEvent decode(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Неизвестная версия события: " + version);
+        }
+
+        int typeId = in.readUnsignedByte();
+        if (typeId >= TYPES.length) {
+            throw new IOException("Неизвестный тип события: " + typeId);
+        }
+
+        Type type = TYPES[typeId];
+        String serverId = in.readUTF();
+        long timestamp = in.readLong();
+        UUID uuid = null;
+        String name = null;
+
+        if (type == Type.AFK || type == Type.BACK) {
+            uuid = new UUID(in.readLong(), in.readLong());
+        }
+        if (type == Type.AFK) {
+            name = in.readUTF();
+        }
+
+        return new AfkEvent(type, serverId, timestamp, uuid, name);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
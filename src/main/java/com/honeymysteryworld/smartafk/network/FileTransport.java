@@ -0,0 +1,210 @@
+package com.honeymysteryworld.smartafk.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Транспорт через общую папку — для серверов на одной машине или общем диске.
+ *
+ * Каждый сервер дописывает свои сообщения в собственный файл
+ * (&lt;server-id&gt;.afklog), а чужие файлы читает с запомненного места.
+ * Писатель у файла один, поэтому блокировки не нужны: читатель берёт только
+ * целые сообщения, недописанный хвост подождёт до следующего опроса.
+ *
+ * Формат: заголовок (magic + поколение), затем [длина][сообщение].
+ * Когда файл вырастает до max-size, он переписывается с нуля с новым
+ * поколением, а сервер заново отправляет своё состояние. Читатель,
+ * увидев другое поколение, начинает файл сначала.
+ */
+public final class FileTransport implements Transport {
+
+    private static final int MAGIC = 0x53414E31; // "SAN1"
+    private static final int HEADER_SIZE = 12;
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024;
+    // Сколько читать из одного файла за опрос — остальное в следующий раз
+    private static final int MAX_READ = 1024 * 1024;
+
+    static final String EXTENSION = ".afklog";
+
+    private final File directory;
+    private final String serverId;
+    private final long maxSize;
+    private final Map<String, Reader> readers = new HashMap<>();
+    private FileChannel channel;
+    private Listener listener;
+
+    public FileTransport(File directory, String serverId, long maxSize) {
+        this.directory = directory;
+        this.serverId = serverId;
+        this.maxSize = Math.max(maxSize, HEADER_SIZE + MAX_MESSAGE_SIZE);
+    }
+
+    @Override
+    public void open(Listener listener) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Не удалось создать папку " + directory);
+        }
+
+        this.listener = listener;
+        this.channel = FileChannel.open(new File(directory, serverId + EXTENSION).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        startGeneration();
+    }
+
+    /**
+     * Переписать свой файл с нуля — всё отправленное раньше читатели забудут
+     */
+    private void startGeneration() throws IOException {
+        channel.truncate(0);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(ThreadLocalRandom.current().nextLong());
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.position(HEADER_SIZE);
+
+        listener.onResync();
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException {
+        if (message.length > MAX_MESSAGE_SIZE) {
+            throw new IOException("Слишком большое сообщение: " + message.length + " байт");
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(4 + message.length);
+        frame.putInt(message.length).put(message);
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+
+        if (channel.position() >= maxSize) {
+            startGeneration();
+        }
+    }
+
+    @Override
+    public void poll() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) return;
+
+        Set<String> present = new HashSet<>();
+        IOException failure = null;
+
+        for (File file : files) {
+            String id = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+            if (id.equals(serverId)) continue;
+
+            present.add(id);
+            try {
+                readers.computeIfAbsent(id, key -> new Reader(file)).poll();
+            } catch (IOException e) {
+                // Один битый файл не должен мешать читать остальные
+                failure = e;
+            }
+        }
+
+        // Файл удалили — сервер больше не участвует
+        readers.keySet().retainAll(present);
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        readers.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Чтение чужого файла с места, где остановились в прошлый раз
+     */
+    private final class Reader {
+
+        private final File file;
+        private long generation;
+        private long offset = -1;
+
+        private Reader(File file) {
+            this.file = file;
+        }
+
+        private void poll() throws IOException {
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = in.size();
+                // Файл только что создан или переписывается
+                if (size < HEADER_SIZE) return;
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                if (!readGeneration(in, header)) {
+                    throw new IOException("Не файл репликации: " + file.getName());
+                }
+
+                long current = header.getLong(4);
+                if (offset < 0 || current != generation) {
+                    generation = current;
+                    offset = HEADER_SIZE;
+                }
+                if (size <= offset) return;
+
+                ByteBuffer data = ByteBuffer.allocate((int) Math.min(size - offset, MAX_READ));
+                while (data.hasRemaining() && in.read(data, offset + data.position()) >= 0) {
+                    // Дочитываем до конца блока
+                }
+
+                // Файл переписали, пока читали — в следующий раз начнём сначала
+                if (!readGeneration(in, header) || header.getLong(4) != generation) {
+                    offset = -1;
+                    return;
+                }
+
+                data.flip();
+                while (data.remaining() >= 4) {
+                    int length = data.getInt(data.position());
+                    if (length <= 0 || length > MAX_MESSAGE_SIZE) {
+                        // Мусор в файле: пропускаем прочитанное, чтобы не застрять
+                        offset += data.remaining();
+                        throw new IOException("Повреждён файл репликации " + file.getName());
+                    }
+                    if (data.remaining() < 4 + length) break;
+
+                    byte[] message = new byte[length];
+                    data.getInt();
+                    data.get(message);
+                    offset += 4 + length;
+                    listener.onMessage(message);
+                }
+            } catch (NoSuchFileException e) {
+                // Удалили между списком файлов и чтением
+            }
+        }
+
+        private boolean readGeneration(FileChannel in, ByteBuffer header) throws IOException {
+            header.clear();
+            while (header.hasRemaining() && in.read(header, header.position()) >= 0) {
+                // Заголовок — 12 байт
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        }
+    }
+}
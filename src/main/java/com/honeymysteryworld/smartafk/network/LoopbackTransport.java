@@ -0,0 +1,56 @@
+package com.honeymysteryworld.smartafk.network;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Транспорт в памяти: сообщения доставляются всем остальным транспортам
+ * того же канала в этой JVM, сразу и в потоке отправителя.
+ *
+ * На обычном сервере других участников нет — подходит для проверки
+ * настроек и для тестов с несколькими экземплярами плагина.
+ */
+public final class LoopbackTransport implements Transport {
+
+    private static final Map<String, Set<LoopbackTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Listener listener;
+
+    public LoopbackTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void open(Listener listener) {
+        this.listener = listener;
+        CHANNELS.computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        Set<LoopbackTransport> members = CHANNELS.get(channel);
+        if (members == null) return;
+
+        for (LoopbackTransport member : members) {
+            Listener target = member.listener;
+            if (member != this && target != null) {
+                target.onMessage(message);
+            }
+        }
+    }
+
+    @Override
+    public void poll() {
+    }
+
+    @Override
+    public void close() {
+        Set<LoopbackTransport> members = CHANNELS.get(channel);
+        if (members != null) {
+            members.remove(this);
+        }
+        listener = null;
+    }
+}
@@ -0,0 +1,302 @@
+package com.honeymysteryworld.smartafk.network;
+
+import com.honeymysteryworld.smartafk.AfkIndex;
+import com.honeymysteryworld.smartafk.SmartAFK;
+import com.honeymysteryworld.smartafk.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.time.Clock;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Репликация АФК статуса между серверами сети (network.enabled).
+ *
+ * setAfk только кладёт событие в очередь — без блокировок и ввода-вывода.
+ * Отдельный поток отправляет события через транспорт, рассылает heartbeat
+ * и собирает события других серверов в NetworkView. Если очередь
+ * переполнилась или транспорт переподключился, поток отправляет состояние
+ * сервера целиком (RESET и всех АФК игроков из индекса). Полное состояние
+ * уходит и просто раз в resync-interval: сервер, который другие успели
+ * забыть (зависание, сдвиг часов), вернётся к ним со всеми АФК игроками.
+ */
+public class NetworkReplicator {
+
+    // При переполнении события теряются — потом уйдёт полное состояние
+    private static final int QUEUE_CAPACITY = 8192;
+    // Сервер без сообщений дольше стольких heartbeat считается выключенным
+    private static final int EXPIRE_HEARTBEATS = 3;
+    private static final long RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(5);
+    private static final String LOOPBACK_CHANNEL = "smartafk";
+
+    private final SmartAFK plugin;
+    private final Logger logger;
+    private final AfkIndex afkIndex;
+    private final Clock time;
+    private final NetworkView view = new NetworkView();
+
+    private final Queue<AfkEvent> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean resyncRequested = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean enabled;
+    private volatile String serverId;
+    private volatile long heartbeatMillis;
+    private volatile long pollMillis;
+    private volatile long resyncMillis;
+    private volatile Thread thread;
+    private String signature = "";
+
+    public NetworkReplicator(SmartAFK plugin, Logger logger, AfkIndex afkIndex, Clock time) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.afkIndex = afkIndex;
+        this.time = time;
+        reload();
+    }
+
+    /**
+     * Интервалы применяются сразу, смена сервера или транспорта перезапускает поток
+     */
+    public void reload() {
+        FileConfiguration config = plugin.getConfig();
+        boolean enabled = config.getBoolean("network.enabled", false);
+        String serverId = resolveServerId(config.getString("network.server-id", ""));
+        String transport = config.getString("network.transport", "file").toLowerCase();
+        String directory = config.getString("network.file.directory", "network");
+        long maxSize = config.getLong("network.file.max-size", 1024) * 1024L;
+
+        heartbeatMillis = config.getInt("network.heartbeat-interval", 5) * 1000L;
+        pollMillis = config.getInt("network.poll-interval", 1) * 1000L;
+        resyncMillis = config.getInt("network.resync-interval", 60) * 1000L;
+
+        String next = enabled + "|" + serverId + "|" + transport + "|" + directory + "|" + maxSize;
+        if (next.equals(signature)) return;
+
+        stop();
+        signature = next;
+        this.serverId = serverId;
+        this.enabled = enabled;
+        if (!enabled) return;
+
+        Transport created = "loopback".equals(transport)
+                ? new LoopbackTransport(LOOPBACK_CHANNEL)
+                : new FileTransport(resolveDirectory(directory), serverId, maxSize);
+
+        Thread worker = new Thread(() -> run(created), "SmartAFK-Network");
+        worker.setDaemon(true);
+        thread = worker;
+        worker.start();
+
+        logger.info("Репликация АФК включена: сервер " + serverId + ", транспорт " + transport);
+    }
+
+    private static String resolveServerId(String configured) {
+        String id = configured == null || configured.trim().isEmpty()
+                ? "server-" + Bukkit.getPort()
+                : configured.trim();
+        // Имя идёт в имя файла
+        return id.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    private File resolveDirectory(String path) {
+        File directory = new File(path);
+        return directory.isAbsolute() ? directory : new File(plugin.getDataFolder(), path);
+    }
+
+    /**
+     * Игрок ушёл в АФК или вернулся (вышел). Не блокирует — только очередь.
+     *
+     * @param timestamp для АФК — начало АФК
+     */
+    public void publish(UUID uuid, String name, boolean afk, long timestamp) {
+        if (!enabled) return;
+
+        String id = serverId;
+        enqueue(afk ? AfkEvent.afk(id, timestamp, uuid, name) : AfkEvent.back(id, timestamp, uuid));
+    }
+
+    private void enqueue(AfkEvent event) {
+        if (queued.incrementAndGet() > QUEUE_CAPACITY) {
+            queued.decrementAndGet();
+            dropped.increment();
+            resyncRequested.set(true);
+        } else {
+            outbound.offer(event);
+        }
+
+        Thread worker = thread;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void run(Transport transport) {
+        Transport.Listener listener = new Transport.Listener() {
+            @Override
+            public void onMessage(byte[] message) {
+                receive(message);
+            }
+
+            @Override
+            public void onResync() {
+                resyncRequested.set(true);
+            }
+        };
+
+        boolean open = false;
+        long nextAttempt = 0;
+        long nextHeartbeat = 0;
+        long nextResync = 0;
+        String lastPollError = null;
+
+        while (thread == Thread.currentThread()) {
+            long now = time.millis();
+
+            try {
+                if (!open && now >= nextAttempt) {
+                    transport.open(listener);
+                    open = true;
+                    resyncRequested.set(true);
+                    logger.debug("Транспорт репликации открыт");
+                }
+
+                if (open) {
+                    if (resyncRequested.getAndSet(false) || now >= nextResync) {
+                        sendState(transport, now);
+                        nextResync = now + resyncMillis;
+                    }
+
+                    AfkEvent event;
+                    while ((event = outbound.poll()) != null) {
+                        queued.decrementAndGet();
+                        transport.send(event.encode());
+                    }
+
+                    if (now >= nextHeartbeat) {
+                        transport.send(AfkEvent.heartbeat(serverId, now).encode());
+                        nextHeartbeat = now + heartbeatMillis;
+                    }
+                }
+            } catch (Exception e) {
+                // Отправленное могло потеряться — после переподключения уйдёт полное состояние
+                logger.warning("Ошибка отправки репликации: " + e.getMessage());
+                transport.close();
+                open = false;
+                nextAttempt = now + RECONNECT_DELAY;
+            }
+
+            if (open) {
+                try {
+                    transport.poll();
+                    lastPollError = null;
+                } catch (Exception e) {
+                    // Не спамим лог одной и той же ошибкой каждый опрос
+                    if (!String.valueOf(e.getMessage()).equals(lastPollError)) {
+                        lastPollError = String.valueOf(e.getMessage());
+                        logger.warning("Ошибка чтения репликации: " + lastPollError);
+                    }
+                }
+            }
+
+            view.expire(now, heartbeatMillis * EXPIRE_HEARTBEATS);
+
+            if (outbound.isEmpty() && !resyncRequested.get()) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(pollMillis));
+            }
+        }
+
+        // Выключение: остальные серверы сразу забывают наших игроков
+        if (open) {
+            try {
+                transport.send(AfkEvent.reset(serverId, time.millis()).encode());
+            } catch (Exception e) {
+                logger.debug("Не удалось отправить RESET: " + e.getMessage());
+            }
+        }
+        transport.close();
+    }
+
+    /**
+     * Полное состояние сервера. Очередь сбрасываем до снимка: индекс уже
+     * содержит всё из неё, а события после снимка останутся в очереди.
+     */
+    private void sendState(Transport transport, long now) throws Exception {
+        while (outbound.poll() != null) {
+            queued.decrementAndGet();
+        }
+
+        transport.send(AfkEvent.reset(serverId, now).encode());
+        for (AfkIndex.Entry entry : afkIndex.list(Integer.MAX_VALUE)) {
+            transport.send(AfkEvent.afk(serverId, entry.getAfkStartTime(), entry.getUuid(), entry.getName()).encode());
+        }
+    }
+
+    private void receive(byte[] message) {
+        try {
+            AfkEvent event = AfkEvent.decode(message);
+            if (event.getServerId().equals(serverId)) return;
+            view.apply(event, time.millis());
+        } catch (Exception e) {
+            logger.debug("Пропущено сообщение репликации: " + e.getMessage());
+        }
+    }
+
+    private void stop() {
+        Thread worker = thread;
+        enabled = false;
+        thread = null;
+        if (worker == null) return;
+
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        outbound.clear();
+        queued.set(0);
+        view.clear();
+    }
+
+    public void shutdown() {
+        stop();
+        signature = "";
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public NetworkView getView() {
+        return view;
+    }
+
+    /**
+     * АФК игроков во всей сети, включая этот сервер
+     */
+    public int getNetworkAfkCount() {
+        return afkIndex.size() + (enabled ? view.getAfkCount() : 0);
+    }
+
+    /**
+     * Сколько событий потеряно из-за переполненной очереди
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,131 @@
+package com.honeymysteryworld.smartafk.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * АФК игроки других серверов, собранные из событий репликации.
+ *
+ * Пишет поток репликации (и отправители loopback транспорта),
+ * читают команды и API — все структуры потокобезопасные.
+ * Сервер, от которого давно не было сообщений, пропадает из картины.
+ * Живость меряется часами этого сервера: часы отправителя могут расходиться.
+ */
+public class NetworkView {
+
+    private final Map<String, ServerState> servers = new ConcurrentHashMap<>();
+
+    /**
+     * @param receivedAt время получения по часам этого сервера
+     */
+    void apply(AfkEvent event, long receivedAt) {
+        ServerState server = servers.computeIfAbsent(event.getServerId(), ServerState::new);
+        server.lastSeen = receivedAt;
+
+        switch (event.getType()) {
+            case RESET:
+                server.afk.clear();
+                break;
+            case AFK:
+                server.afk.put(event.getUuid(), new Entry(event.getServerId(), event.getUuid(),
+                        event.getName(), event.getTimestamp()));
+                break;
+            case BACK:
+                server.afk.remove(event.getUuid());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Забыть серверы, от которых ничего не было дольше timeout.
+     * Если сервер оживёт, его АФК игроки вернутся с ближайшим полным состоянием.
+     */
+    void expire(long now, long timeout) {
+        servers.values().removeIf(server -> now - server.lastSeen > timeout);
+    }
+
+    void clear() {
+        servers.clear();
+    }
+
+    /**
+     * АФК игроков на других серверах
+     */
+    public int getAfkCount() {
+        int count = 0;
+        for (ServerState server : servers.values()) {
+            count += server.afk.size();
+        }
+        return count;
+    }
+
+    /**
+     * АФК игроков по серверам (без этого сервера)
+     */
+    public Map<String, Integer> getAfkCountByServer() {
+        Map<String, Integer> counts = new ConcurrentHashMap<>();
+        for (ServerState server : servers.values()) {
+            counts.put(server.id, server.afk.size());
+        }
+        return counts;
+    }
+
+    public Collection<Entry> getEntries() {
+        if (servers.isEmpty()) return Collections.emptyList();
+
+        List<Entry> entries = new ArrayList<>();
+        for (ServerState server : servers.values()) {
+            entries.addAll(server.afk.values());
+        }
+        return entries;
+    }
+
+    private static final class ServerState {
+
+        private final String id;
+        private final Map<UUID, Entry> afk = new ConcurrentHashMap<>();
+        private volatile long lastSeen;
+
+        private ServerState(String id) {
+            this.id = id;
+        }
+    }
+
+    public static final class Entry {
+
+        private final String serverId;
+        private final UUID uuid;
+        private final String name;
+        private final long afkStartTime;
+
+        public Entry(String serverId, UUID uuid, String name, long afkStartTime) {
+            this.serverId = serverId;
+            this.uuid = uuid;
+            this.name = name;
+            this.afkStartTime = afkStartTime;
+        }
+
+        public String getServerId() {
+            return serverId;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getAfkStartTime() {
+            return afkStartTime;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.honeymysteryworld.smartafk.network;
+
+import java.io.IOException;
+
+/**
+ * Канал, по которому серверы обмениваются событиями АФК.
+ *
+ * Все методы вызывает только поток репликации, поэтому send() и poll()
+ * могут блокироваться на вводе-выводе — главный поток их не ждёт.
+ */
+public interface Transport {
+
+    interface Listener {
+
+        /**
+         * Сообщение другого сервера. Может прийти из любого потока.
+         */
+        void onMessage(byte[] message);
+
+        /**
+         * Отправленное раньше потеряно (ротация, переподключение) —
+         * нужно заново отправить полное состояние сервера
+         */
+        void onResync();
+    }
+
+    void open(Listener listener) throws IOException;
+
+    void send(byte[] message) throws IOException;
+
+    /**
+     * Забрать новые сообщения. Транспорты, которые доставляют сами, ничего не делают.
+     */
+    void poll() throws IOException;
+
+    void close();
+}
@@ -0,0 +1,105 @@
+package com.honeymysteryworld.smartafk.profiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек в наносекундах в духе HdrHistogram.
+ *
+ * Значения раскладываются по степеням двойки, каждая степень делится
+ * на 16 линейных корзин — относительная погрешность не больше ~6%.
+ * Запись — один инкремент в AtomicLongArray, без блокировок и аллокаций.
+ */
+public final class LatencyHistogram {
+
+    // 32 корзины в первом диапазоне, дальше по 16 на каждую степень двойки
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    // Больше ~18 минут не бывает — всё, что выше, попадает в последнюю корзину
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray((BUCKET_COUNT + 1) * SUB_BUCKET_HALF);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+
+        counts.incrementAndGet(countsIndex(value));
+        totalCount.increment();
+        totalNanos.add(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Значение, не меньше которого percentile процентов записей (верхняя граница корзины)
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        int length = counts.length();
+        long[] snapshot = new long[length];
+        for (int i = 0; i < length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        max.set(0);
+    }
+
+    private static int bucketIndex(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        return magnitude - (SUB_BUCKET_BITS - 1);
+    }
+
+    private static int countsIndex(long value) {
+        int bucket = bucketIndex(value);
+        int subBucket = (int) (value >>> bucket);
+        return (bucket + 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        int bucket = Math.max(0, index / SUB_BUCKET_HALF - 1);
+        long subBucket = index - (long) bucket * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+}
@@ -0,0 +1,181 @@
+package com.honeymysteryworld.smartafk.profiler;
+
+import com.honeymysteryworld.smartafk.SmartAFK;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Встроенный профайлер плагина (/afkprofile).
+ *
+ * Каждая точка замера — пара start()/stop() вокруг кода. Пока профайлер
+ * выключен, start() — одно чтение volatile поля и возврат 0, а stop() с нулём
+ * сразу выходит: ни вызова System.nanoTime(), ни записи в гистограмму.
+ */
+public final class Profiler {
+
+    /**
+     * Точки замера. onTick — код выполняется в тике сервера и не вложен
+     * в другую такую точку: из них складывается нагрузка на тик.
+     */
+    public enum Probe {
+
+        CHECKER("Чекер АФК", true),
+        MOVE("Движение", true),
+        AFK_MOVE("Движение в АФК", true),
+        CHAT("Чат", true),
+        COMMAND("Команды", true),
+        BLOCK_BREAK("Ломание блоков", true),
+        BLOCK_PLACE("Установка блоков", true),
+        INTERACT("Взаимодействие", true),
+        INVENTORY("Инвентарь", true),
+        DAMAGE("Урон", true),
+        RESPAWN("Возрождение", true),
+        TELEPORT_EVENT("Событие телепорта", true),
+        WORLD_CHANGE("Смена мира", true),
+        JOIN("Вход", true),
+        QUIT("Выход", true),
+        AFK_START("Начало АФК", false),
+        AFK_END("Конец АФК", false),
+        SAFE_LOCATION("Поиск безопасного места", false),
+        TELEPORT("Телепорт (до завершения)", false),
+        BACKUP_FLUSH("Запись бэкапа", false);
+
+        private final String displayName;
+        private final boolean onTick;
+
+        Probe(String displayName, boolean onTick) {
+            this.displayName = displayName;
+            this.onTick = onTick;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public boolean isOnTick() {
+            return onTick;
+        }
+    }
+
+    private static final long TICK_MILLIS = 50L;
+
+    private final SmartAFK plugin;
+    private final LatencyHistogram[] histograms;
+    private volatile boolean enabled;
+    private volatile long startedAt;
+    // Когда выключили (0 — идёт сбор): время сбора замирает вместе со счётчиками
+    private volatile long stoppedAt;
+    private boolean configEnabled;
+
+    public Profiler(SmartAFK plugin) {
+        this.plugin = plugin;
+        this.histograms = new LatencyHistogram[Probe.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        this.startedAt = System.currentTimeMillis();
+        this.stoppedAt = startedAt;
+        this.configEnabled = plugin.getConfig().getBoolean("settings.profiler", false);
+        setEnabled(configEnabled);
+    }
+
+    /**
+     * Конфиг применяем, только если settings.profiler поменяли —
+     * иначе /afkreload выключал бы профайлер, включённый командой
+     */
+    public void reload() {
+        boolean value = plugin.getConfig().getBoolean("settings.profiler", false);
+        if (value != configEnabled) {
+            configEnabled = value;
+            setEnabled(value);
+        }
+    }
+
+    /**
+     * Начало замера
+     *
+     * @return метка для stop() или 0, если профайлер выключен
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void stop(Probe probe, long start) {
+        if (start == 0L) return;
+        histograms[probe.ordinal()].record(System.nanoTime() - start);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Включение сбрасывает накопленные данные — отчёт всегда за одну сессию.
+     * После выключения отчёт остаётся за время, пока профайлер работал.
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled == this.enabled) return;
+
+        if (enabled) {
+            stoppedAt = 0L;
+            reset();
+        } else {
+            stoppedAt = System.currentTimeMillis();
+        }
+        this.enabled = enabled;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        long now = System.currentTimeMillis();
+        startedAt = now;
+        if (stoppedAt != 0L) {
+            stoppedAt = now;
+        }
+    }
+
+    public LatencyHistogram getHistogram(Probe probe) {
+        return histograms[probe.ordinal()];
+    }
+
+    /**
+     * Сколько миллисекунд шёл сбор данных (без времени после выключения)
+     */
+    public long getElapsedMillis() {
+        long stopped = stoppedAt;
+        long end = stopped != 0L ? stopped : System.currentTimeMillis();
+        return Math.max(1L, end - startedAt);
+    }
+
+    /**
+     * Событий в секунду по точке замера
+     */
+    public double getRate(Probe probe) {
+        return getHistogram(probe).getCount() * 1000.0 / getElapsedMillis();
+    }
+
+    /**
+     * Среднее время плагина на один тик сервера, нс.
+     * На Folia это сумма по всем регионам, а не нагрузка одного потока.
+     */
+    public long getNanosPerTick() {
+        long total = 0;
+        for (Probe probe : Probe.values()) {
+            if (probe.isOnTick()) {
+                total += getHistogram(probe).getTotalNanos();
+            }
+        }
+
+        long ticks = Math.max(1L, getElapsedMillis() / TICK_MILLIS);
+        return total / ticks;
+    }
+
+    /**
+     * Доля бюджета тика (50 мс), в процентах
+     */
+    public double getTickShare() {
+        return getNanosPerTick() * 100.0 / TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+    }
+}
@@ -0,0 +1,100 @@
+package com.honeymysteryworld.smartafk.scheduler;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик Folia: EntityScheduler / RegionScheduler / GlobalRegionScheduler.
+ *
+ * Класс загружается только на Folia — на остальных ядрах этих API может не быть.
+ */
+public class FoliaTaskScheduler implements TaskScheduler {
+
+    private static final long MILLIS_PER_TICK = 50L;
+
+    private final Plugin plugin;
+
+    public FoliaTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public TaskHandle runGlobalTimer(Runnable task, long delay, long period) {
+        ScheduledTask scheduled = Bukkit.getGlobalRegionScheduler()
+                .runAtFixedRate(plugin, t -> task.run(), Math.max(1L, delay), Math.max(1L, period));
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        // Если сущность удалена (игрок вышел) — задача просто не выполнится
+        entity.getScheduler().run(plugin, t -> task.run(), null);
+    }
+
+    @Override
+    public void runForEntityLater(Entity entity, Runnable task, long delay) {
+        entity.getScheduler().runDelayed(plugin, t -> task.run(), null, Math.max(1L, delay));
+    }
+
+    @Override
+    public TaskHandle runForEntityTimer(Entity entity, Runnable task, long delay, long period) {
+        ScheduledTask scheduled = entity.getScheduler().runAtFixedRate(plugin, t -> task.run(), null,
+                Math.max(1L, delay), Math.max(1L, period));
+        // null — сущность уже удалена, задача не запланирована
+        return scheduled != null ? scheduled::cancel : () -> { };
+    }
+
+    @Override
+    public void executeForEntity(Entity entity, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+        } else {
+            runForEntity(entity, task);
+        }
+    }
+
+    @Override
+    public void executeForEntity(Entity entity, Runnable task, Runnable retired) {
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+            return;
+        }
+
+        // null — сущность уже удалена: retired сам не вызовется
+        if (entity.getScheduler().run(plugin, t -> task.run(), retired) == null) {
+            retired.run();
+        }
+    }
+
+    @Override
+    public void executeAtLocation(Location location, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(location)) {
+            task.run();
+        } else {
+            Bukkit.getRegionScheduler().execute(plugin, location, task);
+        }
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> task.run());
+    }
+
+    @Override
+    public TaskHandle runAsyncTimer(Runnable task, long delay, long period) {
+        ScheduledTask scheduled = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> task.run(),
+                Math.max(1L, delay) * MILLIS_PER_TICK, Math.max(1L, period) * MILLIS_PER_TICK, TimeUnit.MILLISECONDS);
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void cancelAll() {
+        Bukkit.getGlobalRegionScheduler().cancelTasks(plugin);
+        Bukkit.getAsyncScheduler().cancelTasks(plugin);
+    }
+}
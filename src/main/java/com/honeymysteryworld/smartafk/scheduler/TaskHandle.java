@@ -0,0 +1,9 @@
+package com.honeymysteryworld.smartafk.scheduler;
+
+/**
+ * Отменяемая задача — общий вид для Bukkit и Folia
+ */
+public interface TaskHandle {
+
+    void cancel();
+}
@@ -0,0 +1,63 @@
+package com.honeymysteryworld.smartafk.scheduler;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+
+/**
+ * Планировщик задач, не зависящий от ядра.
+ *
+ * На Folia задачи игрока выполняются в потоке региона, которому принадлежит игрок,
+ * на Paper/Spigot — в главном потоке сервера.
+ * Задержки и периоды указываются в тиках.
+ */
+public interface TaskScheduler {
+
+    /**
+     * Повторяющаяся глобальная задача (не привязана к игроку или региону)
+     */
+    TaskHandle runGlobalTimer(Runnable task, long delay, long period);
+
+    /**
+     * Выполнить в потоке, владеющем сущностью, на следующем тике
+     */
+    void runForEntity(Entity entity, Runnable task);
+
+    /**
+     * Выполнить в потоке, владеющем сущностью, через delay тиков
+     */
+    void runForEntityLater(Entity entity, Runnable task, long delay);
+
+    /**
+     * Повторяющаяся задача в потоке, владеющем сущностью.
+     * Останавливается сама, когда сущность удалена (на Folia).
+     */
+    TaskHandle runForEntityTimer(Entity entity, Runnable task, long delay, long period);
+
+    /**
+     * Выполнить сразу, если текущий поток владеет сущностью, иначе — запланировать
+     */
+    void executeForEntity(Entity entity, Runnable task);
+
+    /**
+     * То же, но если сущность удалена и задача не выполнится (Folia),
+     * вызывается retired
+     */
+    void executeForEntity(Entity entity, Runnable task, Runnable retired);
+
+    /**
+     * Выполнить в потоке, владеющем регионом локации
+     */
+    void executeAtLocation(Location location, Runnable task);
+
+    /**
+     * Выполнить вне тика сервера
+     */
+    void runAsync(Runnable task);
+
+    TaskHandle runAsyncTimer(Runnable task, long delay, long period);
+
+    /**
+     * Отменить все задачи плагина
+     */
+    void cancelAll();
+}
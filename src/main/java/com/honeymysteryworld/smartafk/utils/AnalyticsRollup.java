@@ -0,0 +1,329 @@
+package com.honeymysteryworld.smartafk.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Итоги АФК в файле, отображённом в память (analytics/rollup.dat).
+ *
+ * Формат: заголовок, кольцо пиков одновременного АФК по часам (год)
+ * и хеш-таблица с открытой адресацией «игрок + день → секунды АФК».
+ * Запросы читают только итоги, а не историю переходов.
+ *
+ * Таблица перестраивается, когда заполнена на 3/4: старые дни выбрасываются,
+ * а если места всё равно мало — она растёт вдвое. На время перестройки
+ * в заголовке стоит флаг; если сервер упал в этот момент, при открытии
+ * итоги будут пустыми и AnalyticsStore пересчитает их из истории.
+ *
+ * Не потокобезопасен — используется только потоком AnalyticsStore.
+ */
+class AnalyticsRollup {
+
+    private static final int MAGIC = 0x53415231; // "SAR1"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int LAST_HOUR_OFFSET = 16;
+    private static final int LAST_COUNT_OFFSET = 20;
+    private static final int FLAGS_OFFSET = 24;
+    private static final int FLAG_REBUILDING = 1;
+
+    // Пики: [час с начала эпохи][пик], ячейка по часу по модулю
+    static final int PEAK_HOURS = 24 * 366;
+    private static final int PEAK_SLOT_SIZE = 8;
+    private static final int TABLE_OFFSET = HEADER_SIZE + PEAK_HOURS * PEAK_SLOT_SIZE;
+
+    // Ячейка таблицы: [uuid msb][uuid lsb][день с начала эпохи][секунды]. День 0 — пустая ячейка
+    private static final int SLOT_SIZE = 24;
+    private static final int DAY_OFFSET = 16;
+    private static final int SECONDS_OFFSET = 20;
+    private static final int MIN_CAPACITY = 4096;
+
+    interface Visitor {
+
+        void visit(long msb, long lsb, int day, int seconds);
+    }
+
+    private final File file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+    private int lastHour;
+    private int lastCount;
+    private int minDay;
+
+    AnalyticsRollup(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Открыть итоги
+     *
+     * @return false — файла не было или он повреждён: итоги пустые
+     */
+    boolean open() throws IOException {
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() >= TABLE_OFFSET) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Заголовок — 32 байта
+            }
+
+            int storedCapacity = header.getInt(CAPACITY_OFFSET);
+            boolean valid = header.getInt(0) == MAGIC
+                    && header.getInt(VERSION_OFFSET) == VERSION
+                    && (header.getInt(FLAGS_OFFSET) & FLAG_REBUILDING) == 0
+                    && storedCapacity >= MIN_CAPACITY
+                    && Integer.bitCount(storedCapacity) == 1
+                    && channel.size() >= TABLE_OFFSET + (long) storedCapacity * SLOT_SIZE;
+
+            if (valid) {
+                map(storedCapacity);
+                size = buffer.getInt(SIZE_OFFSET);
+                lastHour = buffer.getInt(LAST_HOUR_OFFSET);
+                lastCount = buffer.getInt(LAST_COUNT_OFFSET);
+                return true;
+            }
+        }
+
+        map(MIN_CAPACITY);
+        clear();
+        return false;
+    }
+
+    private void map(int newCapacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, TABLE_OFFSET + (long) newCapacity * SLOT_SIZE);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Забыть все итоги
+     */
+    void clear() {
+        zero(0, buffer.capacity());
+        size = 0;
+        lastHour = 0;
+        lastCount = 0;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        writeState();
+    }
+
+    private void zero(int from, int to) {
+        int position = from;
+        for (; position + 8 <= to; position += 8) {
+            buffer.putLong(position, 0L);
+        }
+        for (; position < to; position++) {
+            buffer.put(position, (byte) 0);
+        }
+    }
+
+    private void writeState() {
+        buffer.putInt(SIZE_OFFSET, size);
+        buffer.putInt(LAST_HOUR_OFFSET, lastHour);
+        buffer.putInt(LAST_COUNT_OFFSET, lastCount);
+    }
+
+    /**
+     * Дни раньше этого выбрасываются при следующей перестройке
+     */
+    void setMinDay(int minDay) {
+        this.minDay = minDay;
+    }
+
+    // ==================== Игрок по дням ====================
+
+    void add(long msb, long lsb, int day, int seconds) {
+        if (seconds <= 0 || day <= 0) return;
+
+        int position = slotPosition(find(msb, lsb, day));
+        if (buffer.getInt(position + DAY_OFFSET) != 0) {
+            long total = (long) buffer.getInt(position + SECONDS_OFFSET) + seconds;
+            buffer.putInt(position + SECONDS_OFFSET, (int) Math.min(Integer.MAX_VALUE, total));
+            return;
+        }
+
+        if (size + 1 > capacity / 4 * 3) {
+            rebuild();
+            position = slotPosition(find(msb, lsb, day));
+        }
+
+        buffer.putLong(position, msb);
+        buffer.putLong(position + 8, lsb);
+        buffer.putInt(position + SECONDS_OFFSET, seconds);
+        buffer.putInt(position + DAY_OFFSET, day);
+        size++;
+        buffer.putInt(SIZE_OFFSET, size);
+    }
+
+    int get(long msb, long lsb, int day) {
+        int position = slotPosition(find(msb, lsb, day));
+        return buffer.getInt(position + DAY_OFFSET) != 0 ? buffer.getInt(position + SECONDS_OFFSET) : 0;
+    }
+
+    /**
+     * Все записи за дни [fromDay, toDay]
+     */
+    void forEach(int fromDay, int toDay, Visitor visitor) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            int day = buffer.getInt(position + DAY_OFFSET);
+            if (day != 0 && day >= fromDay && day <= toDay) {
+                visitor.visit(buffer.getLong(position), buffer.getLong(position + 8), day,
+                        buffer.getInt(position + SECONDS_OFFSET));
+            }
+        }
+    }
+
+    /**
+     * Ячейка с этим ключом или пустая, где он должен лежать
+     */
+    private int find(long msb, long lsb, int day) {
+        long hash = (msb ^ lsb ^ (day * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        int slot = (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+
+        while (true) {
+            int position = slotPosition(slot);
+            int stored = buffer.getInt(position + DAY_OFFSET);
+            if (stored == 0 || (stored == day && buffer.getLong(position) == msb
+                    && buffer.getLong(position + 8) == lsb)) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private static int slotPosition(int slot) {
+        return TABLE_OFFSET + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Выбросить старые дни и переложить записи; таблица растёт,
+     * пока живые записи занимают больше половины
+     */
+    private void rebuild() {
+        int live = 0;
+        long[] msbs = new long[size];
+        long[] lsbs = new long[size];
+        int[] days = new int[size];
+        int[] seconds = new int[size];
+
+        for (int slot = 0; slot < capacity && live < size; slot++) {
+            int position = slotPosition(slot);
+            int day = buffer.getInt(position + DAY_OFFSET);
+            if (day == 0 || day < minDay) continue;
+
+            msbs[live] = buffer.getLong(position);
+            lsbs[live] = buffer.getLong(position + 8);
+            days[live] = day;
+            seconds[live] = buffer.getInt(position + SECONDS_OFFSET);
+            live++;
+        }
+
+        int newCapacity = capacity;
+        while ((live + 1) * 2L > newCapacity) {
+            newCapacity <<= 1;
+        }
+
+        buffer.putInt(FLAGS_OFFSET, FLAG_REBUILDING);
+        buffer.force();
+
+        if (newCapacity != capacity) {
+            try {
+                map(newCapacity);
+            } catch (IOException ignored) {
+                // Не выросли (нет места на диске) — перекладываем в ту же таблицу без старых дней
+            }
+        }
+
+        zero(TABLE_OFFSET, buffer.capacity());
+        size = 0;
+        for (int i = 0; i < live; i++) {
+            int position = slotPosition(find(msbs[i], lsbs[i], days[i]));
+            buffer.putLong(position, msbs[i]);
+            buffer.putLong(position + 8, lsbs[i]);
+            buffer.putInt(position + SECONDS_OFFSET, seconds[i]);
+            buffer.putInt(position + DAY_OFFSET, days[i]);
+            size++;
+        }
+
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        writeState();
+        buffer.force();
+        buffer.putInt(FLAGS_OFFSET, 0);
+    }
+
+    // ==================== Пики по часам ====================
+
+    /**
+     * Число АФК игроков после перехода в час hour
+     */
+    void recordCount(int hour, int count) {
+        if (hour < lastHour) {
+            // Часы сервера ушли назад — считаем переход в последний известный час
+            hour = lastHour;
+        }
+
+        // Часы без переходов держали прежнее число АФК, текущий — тоже с начала
+        if (lastHour > 0 && hour > lastHour) {
+            for (int h = Math.max(lastHour + 1, hour - PEAK_HOURS + 1); h <= hour; h++) {
+                raisePeak(h, lastCount);
+            }
+        }
+        raisePeak(hour, count);
+
+        lastHour = hour;
+        lastCount = count;
+        writeState();
+    }
+
+    private void raisePeak(int hour, int value) {
+        int position = HEADER_SIZE + (hour % PEAK_HOURS) * PEAK_SLOT_SIZE;
+        if (buffer.getInt(position) != hour) {
+            buffer.putInt(position, hour);
+            buffer.putInt(position + 4, value);
+        } else if (value > buffer.getInt(position + 4)) {
+            buffer.putInt(position + 4, value);
+        }
+    }
+
+    /**
+     * Пик одновременного АФК за час (для часов после последнего перехода — текущее число)
+     */
+    int getPeak(int hour) {
+        int position = HEADER_SIZE + (hour % PEAK_HOURS) * PEAK_SLOT_SIZE;
+        int stored = buffer.getInt(position) == hour ? buffer.getInt(position + 4) : 0;
+        return hour > lastHour ? Math.max(stored, lastCount) : stored;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() {
+        if (channel == null) return;
+
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,556 @@
+package com.honeymysteryworld.smartafk.utils;
+
+import com.honeymysteryworld.smartafk.SmartAFK;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * История АФК для планирования мощностей (/afkstats).
+ *
+ * Переходы кладутся в lock-free буфер, фоновый поток дописывает их
+ * в файлы истории по дням (analytics/history/ГГГГ-ММ-ДД.bin) и сразу
+ * раскладывает в итоги AnalyticsRollup: секунды АФК игрока по дням и пик
+ * одновременного АФК по часам. Запросы выполняет тот же поток по итогам,
+ * историю они не читают. История нужна, чтобы пересчитать итоги, если
+ * файл итогов потерян, и удаляется после analytics.retention-days.
+ */
+public class AnalyticsStore {
+
+    private static final int BUFFER_CAPACITY = 16384;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // Итоги сбрасываются на диск не чаще этого — ОС и так пишет отображённые страницы
+    private static final long FORCE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    // Сессии длиннее — ошибка часов, а не АФК
+    private static final long MAX_SESSION = TimeUnit.DAYS.toMillis(366);
+
+    // Запись истории: [тип][3 байта][число АФК][начало][конец][uuid msb][uuid lsb]
+    static final int RECORD_SIZE = 40;
+    private static final byte TYPE_START = 1;
+    private static final byte TYPE_END = 2;
+
+    private static final String HISTORY_SUFFIX = ".bin";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final SmartAFK plugin;
+    private final Logger logger;
+    private final Clock time;
+    private final File historyFolder;
+    private final AnalyticsRollup rollup;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LogRingBuffer<Transition> transitions = new LogRingBuffer<>(BUFFER_CAPACITY);
+    private final Queue<Runnable> queries = new ConcurrentLinkedQueue<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean enabled;
+    private volatile int retentionDays;
+
+    // Только поток аналитики
+    private final ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * 1024);
+    private FileChannel history;
+    private LocalDate historyDay;
+    private LocalDate prunedDay;
+    private boolean opened;
+    private volatile boolean failed;
+    private boolean unforced;
+    private long lastForce;
+
+    public AnalyticsStore(SmartAFK plugin, Logger logger, Clock time) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.time = time;
+        File folder = new File(plugin.getDataFolder(), "analytics");
+        this.historyFolder = new File(folder, "history");
+        this.rollup = new AnalyticsRollup(new File(folder, "rollup.dat"));
+        reload();
+
+        this.thread = new Thread(this::run, "SmartAFK-Analytics");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void reload() {
+        this.enabled = plugin.getConfig().getBoolean("analytics.enabled", true);
+        this.retentionDays = plugin.getConfig().getInt("analytics.retention-days", 90);
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isEnabled() {
+        return enabled && !failed;
+    }
+
+    // ==================== Запись ====================
+
+    /**
+     * Игрок ушёл в АФК. Только кладём запись в буфер.
+     *
+     * @param afkCount АФК игроков на сервере после перехода
+     */
+    public void recordStart(UUID uuid, long since, int afkCount) {
+        offer(TYPE_START, uuid, since, since, afkCount);
+    }
+
+    /**
+     * Игрок вернулся, вышел или сервер выключается
+     */
+    public void recordEnd(UUID uuid, long since, long until, int afkCount) {
+        offer(TYPE_END, uuid, since, until, afkCount);
+    }
+
+    private void offer(byte type, UUID uuid, long start, long end, int afkCount) {
+        if (!enabled || !running || uuid == null) return;
+
+        if (!transitions.offer(new Transition(type, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                start, end, afkCount))) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        // Будим поток заранее, чтобы буфер не переполнился
+        if (transitions.size() > BUFFER_CAPACITY / 2) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // ==================== Запросы ====================
+
+    /**
+     * Секунды АФК игрока по дням, последние days дней включая сегодня.
+     * Идущая сейчас сессия (ongoingSince > 0) добавляется к итогам.
+     */
+    public CompletableFuture<DailyStats> getPlayerStats(UUID uuid, int days, long ongoingSince) {
+        return submit(() -> {
+            long now = time.millis();
+            LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+            LocalDate from = today.minusDays(days - 1);
+            long msb = uuid.getMostSignificantBits();
+            long lsb = uuid.getLeastSignificantBits();
+
+            long[] seconds = new long[days];
+            for (int i = 0; i < days; i++) {
+                seconds[i] = rollup.get(msb, lsb, (int) from.plusDays(i).toEpochDay());
+            }
+
+            if (ongoingSince > 0) {
+                splitByDays(ongoingSince, now, (day, amount) -> {
+                    int index = (int) (day - from.toEpochDay());
+                    if (index >= 0 && index < days) {
+                        seconds[index] += amount;
+                    }
+                });
+            }
+
+            return new DailyStats(from, seconds);
+        });
+    }
+
+    /**
+     * Игроки с наибольшим АФК за последние days дней (завершённые сессии)
+     */
+    public CompletableFuture<List<TopEntry>> getTop(int days, int limit) {
+        return submit(() -> {
+            int today = (int) today().toEpochDay();
+            Map<UUID, long[]> totals = new HashMap<>();
+            rollup.forEach(today - days + 1, today, (msb, lsb, day, seconds) ->
+                    totals.computeIfAbsent(new UUID(msb, lsb), key -> new long[1])[0] += seconds);
+
+            // Куча из limit лучших — без сортировки всех игроков
+            PriorityQueue<TopEntry> best = new PriorityQueue<>(limit + 1,
+                    (a, b) -> Long.compare(a.getSeconds(), b.getSeconds()));
+            for (Map.Entry<UUID, long[]> total : totals.entrySet()) {
+                best.offer(new TopEntry(total.getKey(), total.getValue()[0]));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+
+            List<TopEntry> result = new ArrayList<>(best);
+            result.sort((a, b) -> Long.compare(b.getSeconds(), a.getSeconds()));
+            return result;
+        });
+    }
+
+    /**
+     * Пик одновременного АФК за последние hours часов, по возрастанию времени.
+     * Первый элемент — час, который начался hours - 1 часов назад.
+     */
+    public CompletableFuture<int[]> getHourlyPeaks(int hours) {
+        return submit(() -> {
+            int current = (int) TimeUnit.MILLISECONDS.toHours(time.millis());
+            int[] peaks = new int[hours];
+            for (int i = 0; i < hours; i++) {
+                peaks[i] = rollup.getPeak(current - hours + 1 + i);
+            }
+            return peaks;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Аналитика остановлена"));
+            return future;
+        }
+
+        queries.offer(() -> {
+            try {
+                if (!opened) {
+                    throw new IllegalStateException("Итоги аналитики недоступны");
+                }
+                future.complete(query.get());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        LockSupport.unpark(thread);
+        return future;
+    }
+
+    // ==================== Поток аналитики ====================
+
+    private void run() {
+        while (running) {
+            process();
+            if (transitions.size() == 0 && queries.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+
+        // Дописываем то, что успели положить до остановки
+        process();
+        closeHistory();
+        rollup.close();
+    }
+
+    private void process() {
+        if (!opened && !failed && enabled) {
+            open();
+        }
+
+        try {
+            drainTransitions();
+        } catch (IOException e) {
+            logger.error("Ошибка записи истории АФК", e);
+            closeHistory();
+        }
+
+        Runnable query;
+        while ((query = queries.poll()) != null) {
+            query.run();
+        }
+
+        if (opened) {
+            long now = time.millis();
+            LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+            if (!today.equals(prunedDay)) {
+                prune(today);
+            }
+            if (unforced && now - lastForce >= FORCE_INTERVAL) {
+                rollup.force();
+                unforced = false;
+                lastForce = now;
+            }
+        }
+    }
+
+    private void open() {
+        long start = System.nanoTime();
+
+        try {
+            if (!historyFolder.exists()) {
+                historyFolder.mkdirs();
+            }
+
+            LocalDate today = today();
+            rollup.setMinDay((int) today.minusDays(retentionDays).toEpochDay());
+
+            if (!rollup.open()) {
+                int replayed = replayHistory();
+                if (replayed > 0) {
+                    logger.info("Итоги АФК пересчитаны из истории: " + replayed + " записей");
+                }
+            }
+
+            prune(today);
+            opened = true;
+            logger.debug("Аналитика АФК открыта за "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " мс");
+        } catch (Exception e) {
+            // Без итогов не пишем и историю — /afkstats сообщит, что аналитика недоступна
+            failed = true;
+            logger.error("Ошибка открытия аналитики АФК, запись отключена", e);
+        }
+    }
+
+    private void drainTransitions() throws IOException {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            logger.warning("Пропущено переходов в аналитике: " + lost);
+        }
+
+        Transition transition;
+        while ((transition = transitions.poll()) != null) {
+            if (!opened) continue;
+
+            long eventTime = transition.type == TYPE_START ? transition.start : transition.end;
+            LocalDate day = Instant.ofEpochMilli(eventTime).atZone(zone).toLocalDate();
+            if (!day.equals(historyDay)) {
+                flushBatch();
+                openHistory(day);
+            }
+
+            if (batch.remaining() < RECORD_SIZE) {
+                flushBatch();
+            }
+            batch.put(transition.type).put((byte) 0).put((byte) 0).put((byte) 0)
+                    .putInt(transition.afkCount)
+                    .putLong(transition.start)
+                    .putLong(transition.end)
+                    .putLong(transition.msb)
+                    .putLong(transition.lsb);
+
+            apply(transition.type, transition.msb, transition.lsb, transition.start, transition.end,
+                    transition.afkCount);
+        }
+
+        flushBatch();
+    }
+
+    /**
+     * Разложить переход в итоги
+     */
+    private void apply(byte type, long msb, long lsb, long start, long end, int afkCount) {
+        if (type == TYPE_START) {
+            rollup.recordCount((int) TimeUnit.MILLISECONDS.toHours(start), afkCount);
+        } else if (type == TYPE_END) {
+            rollup.recordCount((int) TimeUnit.MILLISECONDS.toHours(end), afkCount);
+            if (end > start && end - start <= MAX_SESSION) {
+                splitByDays(start, end, (day, seconds) -> rollup.add(msb, lsb, (int) day, (int) seconds));
+            }
+        }
+        unforced = true;
+    }
+
+    private interface DayConsumer {
+
+        void accept(long epochDay, long seconds);
+    }
+
+    /**
+     * Разбить отрезок времени по границам суток часового пояса сервера
+     */
+    private void splitByDays(long start, long end, DayConsumer consumer) {
+        long from = start;
+        while (from < end) {
+            LocalDate day = Instant.ofEpochMilli(from).atZone(zone).toLocalDate();
+            long dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            long to = Math.min(end, dayEnd);
+            consumer.accept(day.toEpochDay(), (to - from) / 1000);
+            from = to;
+        }
+    }
+
+    private void openHistory(LocalDate day) throws IOException {
+        closeHistory();
+        history = FileChannel.open(new File(historyFolder, DAY_FORMAT.format(day) + HISTORY_SUFFIX).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        historyDay = day;
+    }
+
+    private void flushBatch() throws IOException {
+        if (batch.position() == 0 || history == null) {
+            batch.clear();
+            return;
+        }
+
+        batch.flip();
+        while (batch.hasRemaining()) {
+            history.write(batch);
+        }
+        batch.clear();
+    }
+
+    private void closeHistory() {
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException ignored) {
+            }
+            history = null;
+        }
+        historyDay = null;
+    }
+
+    /**
+     * Пересчитать итоги из файлов истории по порядку дней
+     */
+    private int replayHistory() throws IOException {
+        File[] files = historyFolder.listFiles((dir, name) -> name.endsWith(HISTORY_SUFFIX));
+        if (files == null || files.length == 0) return 0;
+
+        Arrays.sort(files);
+        int replayed = 0;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+        for (File file : files) {
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long position = 0;
+                // Оборванный хвост последней записи пропускаем
+                while (position + RECORD_SIZE <= in.size()) {
+                    record.clear();
+                    while (record.hasRemaining() && in.read(record, position + record.position()) >= 0) {
+                        // Запись — 40 байт
+                    }
+                    position += RECORD_SIZE;
+
+                    apply(record.get(0), record.getLong(24), record.getLong(32),
+                            record.getLong(8), record.getLong(16), record.getInt(4));
+                    replayed++;
+                }
+            }
+        }
+
+        rollup.force();
+        return replayed;
+    }
+
+    /**
+     * Удалить историю старше retention-days
+     */
+    private void prune(LocalDate today) {
+        int retention = retentionDays;
+        LocalDate oldest = today.minusDays(retention);
+        rollup.setMinDay((int) oldest.toEpochDay());
+        prunedDay = today;
+
+        File[] files = historyFolder.listFiles((dir, name) -> name.endsWith(HISTORY_SUFFIX));
+        if (files == null) return;
+
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                LocalDate day = LocalDate.parse(name.substring(0, name.length() - HISTORY_SUFFIX.length()), DAY_FORMAT);
+                if (day.isBefore(oldest)) {
+                    file.delete();
+                }
+            } catch (DateTimeParseException ignored) {
+                // Чужой файл — не трогаем
+            }
+        }
+    }
+
+    private LocalDate today() {
+        return Instant.ofEpochMilli(time.millis()).atZone(zone).toLocalDate();
+    }
+
+    /**
+     * Остановить поток, дописать историю и сбросить итоги на диск
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== Данные ====================
+
+    private static final class Transition {
+
+        private final byte type;
+        private final long msb;
+        private final long lsb;
+        private final long start;
+        private final long end;
+        private final int afkCount;
+
+        private Transition(byte type, long msb, long lsb, long start, long end, int afkCount) {
+            this.type = type;
+            this.msb = msb;
+            this.lsb = lsb;
+            this.start = start;
+            this.end = end;
+            this.afkCount = afkCount;
+        }
+    }
+
+    public static final class DailyStats {
+
+        private final LocalDate from;
+        private final long[] seconds;
+
+        private DailyStats(LocalDate from, long[] seconds) {
+            this.from = from;
+            this.seconds = seconds;
+        }
+
+        /**
+         * Первый день периода
+         */
+        public LocalDate getFrom() {
+            return from;
+        }
+
+        /**
+         * Секунды АФК по дням, начиная с getFrom()
+         */
+        public long[] getSeconds() {
+            return seconds;
+        }
+
+        public long getTotal() {
+            long total = 0;
+            for (long value : seconds) {
+                total += value;
+            }
+            return total;
+        }
+    }
+
+    public static final class TopEntry {
+
+        private final UUID uuid;
+        private final long seconds;
+
+        private TopEntry(UUID uuid, long seconds) {
+            this.uuid = uuid;
+            this.seconds = seconds;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public long getSeconds() {
+            return seconds;
+        }
+    }
+}
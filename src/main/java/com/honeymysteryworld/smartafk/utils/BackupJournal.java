@@ -0,0 +1,421 @@
+package com.honeymysteryworld.smartafk.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Бинарный журнал состояния возврата АФК игроков (только дозапись).
+ *
+ * Формат: заголовок (magic + версия), затем записи фиксированного размера.
+ * Каждая запись — PUT или REMOVE для одного игрока с CRC32 в конце.
+ * Координаты упакованы в int с шагом 1/64 блока (до ±33 млн блоков —
+ * дальше границы мира), поворот — в short с шагом 0.01°; запись — 64 байта.
+ * Журнал версии 1 (координаты double, 80 байт) читается и переписывается.
+ * При чтении побеждает последняя запись по игроку; оборванный хвост
+ * после краша отбрасывается. Компакция переписывает только живые записи
+ * через временный файл и атомарное переименование.
+ *
+ * Не потокобезопасен — используется только потоком записи BackupManager.
+ */
+public class BackupJournal {
+
+    private static final int MAGIC = 0x53414A31; // "SAJ1"
+    private static final int VERSION = 2;
+    private static final int LEGACY_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    static final int RECORD_SIZE = 64;
+    private static final int LEGACY_RECORD_SIZE = 80;
+
+    // Шаг упакованных координат — 1/64 блока, поворота — 0.01°
+    private static final double COORDINATE_SCALE = 64.0;
+    private static final float ANGLE_SCALE = 100.0f;
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+
+    private static final int FLAG_FLYING = 1;
+    private static final int FLAG_ALLOW_FLIGHT = 1 << 1;
+
+    private final File file;
+    private final File tempFile;
+    private FileChannel channel;
+    private long recordCount;
+
+    public BackupJournal(File file) {
+        this.file = file;
+        this.tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /**
+     * Прочитать журнал и открыть его для дозаписи.
+     *
+     * @return живые записи по игрокам
+     */
+    public Map<UUID, Record> open() throws IOException {
+        File folder = file.getParentFile();
+        if (folder != null && !folder.exists()) {
+            folder.mkdirs();
+        }
+
+        Map<UUID, Record> live = new HashMap<>();
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            resetToHeader();
+            return live;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Читаем файл целиком — десятки тысяч записей это единицы мегабайт
+        }
+        buffer.flip();
+
+        int version = buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+        if (version != VERSION && version != LEGACY_VERSION) {
+            throw new IOException("Неизвестный формат журнала: " + file.getName());
+        }
+
+        boolean legacy = version == LEGACY_VERSION;
+        int recordSize = legacy ? LEGACY_RECORD_SIZE : RECORD_SIZE;
+
+        CRC32 crc = new CRC32();
+        byte[] data = buffer.array();
+        long validEnd = HEADER_SIZE;
+        recordCount = 0;
+
+        while (buffer.remaining() >= recordSize) {
+            int offset = buffer.position();
+
+            crc.reset();
+            crc.update(data, offset, recordSize - 4);
+            if ((int) crc.getValue() != buffer.getInt(offset + recordSize - 4)) {
+                // Оборванная или повреждённая запись — дальше доверять нельзя
+                break;
+            }
+
+            Record record = legacy ? decodeLegacy(buffer) : decode(buffer);
+            if (record.isRemove()) {
+                live.remove(record.getUuid());
+            } else {
+                live.put(record.getUuid(), record);
+            }
+
+            recordCount++;
+            validEnd = buffer.position();
+        }
+
+        if (legacy) {
+            // Старый формат дописывать нельзя — сразу переписываем в новый
+            compact(live.values());
+            return live;
+        }
+
+        if (validEnd < size) {
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+
+        return live;
+    }
+
+    /**
+     * Дописать пачку записей одной операцией записи
+     */
+    public void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) return;
+
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        for (Record record : records) {
+            encode(record, buffer);
+        }
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+
+        recordCount += records.size();
+    }
+
+    /**
+     * Переписать журнал, оставив только живые записи
+     */
+    public void compact(Collection<Record> live) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + live.size() * RECORD_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        for (Record record : live) {
+            encode(record, buffer);
+        }
+        buffer.flip();
+
+        try (FileChannel temp = FileChannel.open(tempFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                temp.write(buffer);
+            }
+            temp.force(true);
+        }
+
+        close();
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        recordCount = live.size();
+    }
+
+    public void close() {
+        if (channel == null) return;
+
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Файл уже недоступен — нечего закрывать
+        }
+        channel = null;
+    }
+
+    public boolean isOpen() {
+        return channel != null;
+    }
+
+    /**
+     * Сколько записей в файле (включая устаревшие)
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private void resetToHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+
+        channel.truncate(0);
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(false);
+        recordCount = 0;
+    }
+
+    // ==================== Формат записи ====================
+
+    private static void encode(Record record, ByteBuffer buffer) {
+        int start = buffer.position();
+
+        buffer.put(record.type);
+        buffer.put((byte) ((record.flying ? FLAG_FLYING : 0) | (record.allowFlight ? FLAG_ALLOW_FLIGHT : 0)));
+        buffer.put((byte) record.food);
+        buffer.put((byte) 0); // резерв
+        buffer.putLong(record.uuid.getMostSignificantBits());
+        buffer.putLong(record.uuid.getLeastSignificantBits());
+        buffer.putLong(record.worldUid != null ? record.worldUid.getMostSignificantBits() : 0L);
+        buffer.putLong(record.worldUid != null ? record.worldUid.getLeastSignificantBits() : 0L);
+        buffer.putInt(packCoordinate(record.x));
+        buffer.putInt(packCoordinate(record.y));
+        buffer.putInt(packCoordinate(record.z));
+        buffer.putShort(packAngle(record.yaw));
+        buffer.putShort(packAngle(record.pitch));
+        buffer.putFloat(record.health);
+        buffer.putFloat(record.saturation);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, RECORD_SIZE - 4);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static int packCoordinate(double value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(value * COORDINATE_SCALE)));
+    }
+
+    private static short packAngle(float degrees) {
+        // Yaw приводим к [-180, 180), чтобы влез в short
+        float normalized = degrees % 360.0f;
+        if (normalized >= 180.0f) normalized -= 360.0f;
+        if (normalized < -180.0f) normalized += 360.0f;
+        return (short) Math.round(normalized * ANGLE_SCALE);
+    }
+
+    private static Record decode(ByteBuffer buffer) {
+        byte type = buffer.get();
+        int flags = buffer.get();
+        int food = buffer.get();
+        buffer.get(); // резерв
+
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        long worldMost = buffer.getLong();
+        long worldLeast = buffer.getLong();
+        UUID worldUid = worldMost == 0L && worldLeast == 0L ? null : new UUID(worldMost, worldLeast);
+
+        double x = buffer.getInt() / COORDINATE_SCALE;
+        double y = buffer.getInt() / COORDINATE_SCALE;
+        double z = buffer.getInt() / COORDINATE_SCALE;
+        float yaw = buffer.getShort() / ANGLE_SCALE;
+        float pitch = buffer.getShort() / ANGLE_SCALE;
+        float health = buffer.getFloat();
+        float saturation = buffer.getFloat();
+        buffer.getInt(); // CRC уже проверен
+
+        if (type == TYPE_REMOVE) {
+            return Record.remove(uuid);
+        }
+
+        return new Record(TYPE_PUT, uuid, worldUid, x, y, z, yaw, pitch,
+                (flags & FLAG_FLYING) != 0, (flags & FLAG_ALLOW_FLIGHT) != 0, health, food, saturation);
+    }
+
+    /**
+     * Запись версии 1: координаты double, поворот float
+     */
+    private static Record decodeLegacy(ByteBuffer buffer) {
+        byte type = buffer.get();
+        int flags = buffer.get();
+        int food = buffer.get();
+        buffer.get(); // резерв
+
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        long worldMost = buffer.getLong();
+        long worldLeast = buffer.getLong();
+        UUID worldUid = worldMost == 0L && worldLeast == 0L ? null : new UUID(worldMost, worldLeast);
+
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        double z = buffer.getDouble();
+        float yaw = buffer.getFloat();
+        float pitch = buffer.getFloat();
+        float health = buffer.getFloat();
+        float saturation = buffer.getFloat();
+        buffer.getInt(); // CRC уже проверен
+
+        if (type == TYPE_REMOVE) {
+            return Record.remove(uuid);
+        }
+
+        return new Record(TYPE_PUT, uuid, worldUid, x, y, z, yaw, pitch,
+                (flags & FLAG_FLYING) != 0, (flags & FLAG_ALLOW_FLIGHT) != 0, health, food, saturation);
+    }
+
+    /**
+     * Запись журнала — неизменяемый снимок состояния игрока
+     */
+    public static final class Record {
+
+        private final byte type;
+        private final UUID uuid;
+        private final UUID worldUid;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final float yaw;
+        private final float pitch;
+        private final boolean flying;
+        private final boolean allowFlight;
+        private final float health;
+        private final int food;
+        private final float saturation;
+
+        private Record(byte type, UUID uuid, UUID worldUid, double x, double y, double z, float yaw, float pitch,
+                       boolean flying, boolean allowFlight, float health, int food, float saturation) {
+            this.type = type;
+            this.uuid = uuid;
+            this.worldUid = worldUid;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yaw = yaw;
+            this.pitch = pitch;
+            this.flying = flying;
+            this.allowFlight = allowFlight;
+            this.health = health;
+            this.food = food;
+            this.saturation = saturation;
+        }
+
+        public static Record put(UUID uuid, UUID worldUid, double x, double y, double z, float yaw, float pitch,
+                                 boolean flying, boolean allowFlight, double health, int food, float saturation) {
+            return new Record(TYPE_PUT, uuid, worldUid, x, y, z, yaw, pitch,
+                    flying, allowFlight, (float) health, Math.max(0, Math.min(food, 127)), saturation);
+        }
+
+        public static Record remove(UUID uuid) {
+            return new Record(TYPE_REMOVE, uuid, null, 0, 0, 0, 0, 0, false, false, 0, 0, 0);
+        }
+
+        public boolean isRemove() {
+            return type == TYPE_REMOVE;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public UUID getWorldUid() {
+            return worldUid;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+        public float getYaw() {
+            return yaw;
+        }
+
+        public float getPitch() {
+            return pitch;
+        }
+
+        public boolean isFlying() {
+            return flying;
+        }
+
+        public boolean isAllowFlight() {
+            return allowFlight;
+        }
+
+        public float getHealth() {
+            return health;
+        }
+
+        public int getFood() {
+            return food;
+        }
+
+        public float getSaturation() {
+            return saturation;
+        }
+    }
+}
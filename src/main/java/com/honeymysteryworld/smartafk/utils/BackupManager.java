@@ -2,114 +2,332 @@ package com.honeymysteryworld.smartafk.utils;
 
 import com.honeymysteryworld.smartafk.AfkPlayer;
 import com.honeymysteryworld.smartafk.SmartAFK;
+import com.honeymysteryworld.smartafk.profiler.Profiler;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Бэкап состояния АФК игроков (защита от крашей).
+ *
+ * Каждый переход добавляет одну запись в очередь и помечает бэкап "грязным".
+ * Отдельный поток дописывает накопленные записи в бинарный журнал
+ * не чаще раза в flush-interval и периодически сжимает его.
+ * Записи живут в журнале, пока игрок не вернётся на своё место.
+ */
 public class BackupManager {
 
+    // Сжимаем, когда устаревших записей заметно больше живых
+    private static final int COMPACTION_MIN_RECORDS = 1024;
+    private static final int COMPACTION_RATIO = 4;
+    private static final long COMPACTION_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
     private final SmartAFK plugin;
     private final Logger logger;
-    private final File backupFile;
-    private boolean enabled;
+    private final File legacyFile;
+    private final BackupJournal journal;
+    private final Profiler profiler;
+
+    // Живое состояние и ещё не записанные записи — меняются вместе под stateLock
+    private final Object stateLock = new Object();
+    private final Map<UUID, BackupJournal.Record> entries = new HashMap<>();
+    private List<BackupJournal.Record> pending = new ArrayList<>();
+
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final Object writeLock = new Object();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile boolean enabled;
+    private volatile long flushIntervalMillis;
+    private boolean compactionRequested;
+    private long lastCompaction;
 
     public BackupManager(SmartAFK plugin, Logger logger) {
         this.plugin = plugin;
         this.logger = logger;
-        this.backupFile = new File(plugin.getDataFolder(), "backup.yml");
-        this.enabled = plugin.getConfig().getBoolean("settings.backup-locations", true);
+        this.legacyFile = new File(plugin.getDataFolder(), "backup.yml");
+        this.journal = new BackupJournal(new File(plugin.getDataFolder(), "backup.journal"));
+        this.profiler = plugin.getProfiler();
+        this.lastCompaction = System.currentTimeMillis();
+        reload();
+        openJournal();
+
+        this.writerThread = new Thread(this::runWriter, "SmartAFK-Backup");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
     }
 
     public void reload() {
         this.enabled = plugin.getConfig().getBoolean("settings.backup-locations", true);
+        this.flushIntervalMillis = plugin.getConfig().getInt("settings.backup-flush-interval", 2) * 1000L;
     }
 
-    public void saveBackup(Map<UUID, AfkPlayer> players) {
-        if (!enabled) return;
+    private void openJournal() {
+        long start = System.nanoTime();
 
         try {
-            YamlConfiguration config = new YamlConfiguration();
-
-            for (Map.Entry<UUID, AfkPlayer> entry : players.entrySet()) {
-                AfkPlayer afkPlayer = entry.getValue();
-
-                if (afkPlayer.isAfk() && afkPlayer.getReturnLocation() != null) {
-                    String uuid = entry.getKey().toString();
-                    Location loc = afkPlayer.getReturnLocation();
-
-                    config.set(uuid + ".world", loc.getWorld().getName());
-                    config.set(uuid + ".x", loc.getX());
-                    config.set(uuid + ".y", loc.getY());
-                    config.set(uuid + ".z", loc.getZ());
-                    config.set(uuid + ".yaw", loc.getYaw());
-                    config.set(uuid + ".pitch", loc.getPitch());
-                    config.set(uuid + ".flying", afkPlayer.wasFlying());
-                    config.set(uuid + ".allowFlight", afkPlayer.wasAllowFlight());
+            Map<UUID, BackupJournal.Record> live = journal.open();
+            synchronized (stateLock) {
+                entries.putAll(live);
+            }
+            logger.debug("Журнал бэкапа прочитан: " + live.size() + " записей за "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " мс");
+        } catch (Exception e) {
+            logger.error("Ошибка чтения журнала бэкапа, начинаю новый", e);
+            journal.close();
+            requestCompaction();
+        }
+    }
+
+    /**
+     * Обновить состояние игрока после перехода. Сама запись — в фоне.
+     */
+    public void update(AfkPlayer afkPlayer) {
+        if (!enabled || afkPlayer == null) return;
+
+        Location loc = afkPlayer.getReturnLocation();
+
+        if (afkPlayer.isAfk() && loc != null && loc.getWorld() != null) {
+            BackupJournal.Record record = BackupJournal.Record.put(afkPlayer.getUuid(), loc.getWorld().getUID(),
+                    loc.getX(), loc.getY(), loc.getZ(), loc.getYaw(), loc.getPitch(),
+                    afkPlayer.wasFlying(), afkPlayer.wasAllowFlight(),
+                    afkPlayer.getWasHealth(), afkPlayer.getWasFood(), afkPlayer.getWasSaturation());
+
+            synchronized (stateLock) {
+                entries.put(record.getUuid(), record);
+                pending.add(record);
+            }
+        } else {
+            remove(afkPlayer.getUuid());
+            return;
+        }
+
+        markDirty();
+    }
+
+    /**
+     * Игрок вернулся или вышел — его запись больше не нужна
+     */
+    public void remove(UUID uuid) {
+        if (!enabled || uuid == null) return;
+
+        synchronized (stateLock) {
+            if (entries.remove(uuid) == null) return;
+            pending.add(BackupJournal.Record.remove(uuid));
+        }
+
+        markDirty();
+    }
+
+    private void requestCompaction() {
+        synchronized (stateLock) {
+            compactionRequested = true;
+        }
+        markDirty();
+    }
+
+    private void markDirty() {
+        if (!dirty.getAndSet(true)) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void runWriter() {
+        while (running) {
+            if (!dirty.get()) {
+                // Просыпаемся и без изменений — для периодического сжатия
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(COMPACTION_INTERVAL));
+                if (!dirty.get() && shouldCompact(0, System.currentTimeMillis())) {
+                    requestCompaction();
                 }
+                continue;
             }
 
-            config.save(backupFile);
-            logger.debug("Бэкап сохранён: " + players.size() + " игроков");
+            flush(false);
 
-        } catch (Exception e) {
-            logger.error("Ошибка сохранения бэкапа", e);
+            // Ограничиваем частоту записи — изменения за это время склеятся в одну.
+            // park, а не sleep: shutdown будит поток через unpark без interrupt
+            long wakeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            long left;
+            while (running && (left = wakeAt - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, left);
+            }
         }
     }
 
+    /**
+     * Дописать накопленные записи (или сжать журнал, если пора)
+     */
+    private void flush(boolean forceCompaction) {
+        if (!dirty.getAndSet(false) && !forceCompaction) return;
+
+        synchronized (writeLock) {
+            long start = profiler.start();
+            long now = System.currentTimeMillis();
+            List<BackupJournal.Record> batch;
+            Collection<BackupJournal.Record> snapshot = null;
+
+            synchronized (stateLock) {
+                batch = pending;
+                pending = new ArrayList<>();
+
+                if (forceCompaction || compactionRequested || !journal.isOpen() || shouldCompact(batch.size(), now)) {
+                    // Снимок уже содержит всё из batch
+                    snapshot = new ArrayList<>(entries.values());
+                    compactionRequested = false;
+                }
+            }
+
+            try {
+                if (snapshot != null) {
+                    journal.compact(snapshot);
+                    lastCompaction = now;
+                    logger.debug("Журнал бэкапа сжат: " + snapshot.size() + " записей");
+                } else {
+                    journal.append(batch);
+                    logger.debug("Бэкап дописан: " + batch.size() + " записей");
+                }
+            } catch (Exception e) {
+                logger.error("Ошибка сохранения бэкапа", e);
+                // Что именно дошло до диска — неизвестно, в следующий раз перепишем целиком
+                requestCompaction();
+            }
+
+            profiler.stop(Profiler.Probe.BACKUP_FLUSH, start);
+        }
+    }
+
+    private boolean shouldCompact(int incoming, long now) {
+        long total = journal.getRecordCount() + incoming;
+        int live;
+        synchronized (stateLock) {
+            live = entries.size();
+        }
+
+        if (total > Math.max(COMPACTION_MIN_RECORDS, (long) live * COMPACTION_RATIO)) {
+            return true;
+        }
+
+        return total > live && now - lastCompaction >= COMPACTION_INTERVAL;
+    }
+
+    /**
+     * Остановить фоновый поток и синхронно дописать последние изменения.
+     * Без interrupt: прерывание внутри FileChannel.write/force закрыло бы канал.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Оставляем на диске только живые записи
+        flush(true);
+        journal.close();
+    }
+
+    /**
+     * Восстановить состояние игроков из журнала (и старого backup.yml, если он остался)
+     */
     public void loadBackup(Map<UUID, AfkPlayer> players) {
-        if (!enabled || !backupFile.exists()) return;
+        if (!enabled) return;
+
+        loadLegacyBackup();
+
+        List<BackupJournal.Record> records;
+        synchronized (stateLock) {
+            records = new ArrayList<>(entries.values());
+        }
+
+        int restored = 0;
+        for (BackupJournal.Record record : records) {
+            World world = record.getWorldUid() != null ? Bukkit.getWorld(record.getWorldUid()) : null;
+            if (world == null) continue;
+
+            AfkPlayer afkPlayer = players.computeIfAbsent(record.getUuid(), uuid -> new AfkPlayer(uuid, plugin.getClock()));
+            afkPlayer.setReturnLocation(new Location(world, record.getX(), record.getY(), record.getZ(),
+                    record.getYaw(), record.getPitch()));
+            afkPlayer.setWasFlying(record.isFlying());
+            afkPlayer.setWasAllowFlight(record.isAllowFlight());
+            afkPlayer.setWasHealth(record.getHealth());
+            afkPlayer.setWasFood(record.getFood());
+            afkPlayer.setWasSaturation(record.getSaturation());
+            restored++;
+
+            logger.debug("Загружен бэкап для: " + record.getUuid());
+        }
+
+        if (restored > 0) {
+            logger.info("Бэкап восстановлен: " + restored + " игроков");
+        }
+    }
+
+    /**
+     * Перенос старого YAML-бэкапа в журнал
+     */
+    private void loadLegacyBackup() {
+        if (!legacyFile.exists()) return;
 
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(backupFile);
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(legacyFile);
 
             for (String uuidStr : config.getKeys(false)) {
                 try {
                     UUID uuid = UUID.fromString(uuidStr);
-
-                    String worldName = config.getString(uuidStr + ".world");
-                    World world = Bukkit.getWorld(worldName);
+                    World world = Bukkit.getWorld(config.getString(uuidStr + ".world"));
 
                     if (world == null) continue;
 
-                    double x = config.getDouble(uuidStr + ".x");
-                    double y = config.getDouble(uuidStr + ".y");
-                    double z = config.getDouble(uuidStr + ".z");
-                    float yaw = (float) config.getDouble(uuidStr + ".yaw");
-                    float pitch = (float) config.getDouble(uuidStr + ".pitch");
-                    boolean flying = config.getBoolean(uuidStr + ".flying");
-                    boolean allowFlight = config.getBoolean(uuidStr + ".allowFlight");
-
-                    Location loc = new Location(world, x, y, z, yaw, pitch);
-
-                    AfkPlayer afkPlayer = players.computeIfAbsent(uuid, AfkPlayer::new);
-                    afkPlayer.setReturnLocation(loc);
-                    afkPlayer.setWasFlying(flying);
-                    afkPlayer.setWasAllowFlight(allowFlight);
+                    BackupJournal.Record record = BackupJournal.Record.put(uuid, world.getUID(),
+                            config.getDouble(uuidStr + ".x"),
+                            config.getDouble(uuidStr + ".y"),
+                            config.getDouble(uuidStr + ".z"),
+                            (float) config.getDouble(uuidStr + ".yaw"),
+                            (float) config.getDouble(uuidStr + ".pitch"),
+                            config.getBoolean(uuidStr + ".flying"),
+                            config.getBoolean(uuidStr + ".allowFlight"),
+                            20.0, 20, 5.0f);
 
-                    logger.debug("Загружен бэкап для: " + uuidStr);
+                    synchronized (stateLock) {
+                        entries.put(uuid, record);
+                        pending.add(record);
+                    }
 
                 } catch (Exception e) {
                     logger.warning("Ошибка загрузки бэкапа для " + uuidStr);
                 }
             }
 
-            // Удаляем файл после загрузки
-            backupFile.delete();
-            logger.info("Бэкап восстановлен");
+            legacyFile.delete();
+            markDirty();
+            logger.info("Старый backup.yml перенесён в журнал");
 
         } catch (Exception e) {
-            logger.error("Ошибка загрузки бэкапа", e);
+            logger.error("Ошибка загрузки backup.yml", e);
         }
     }
 
     public void clearBackup() {
-        if (backupFile.exists()) {
-            backupFile.delete();
+        synchronized (stateLock) {
+            entries.clear();
+            pending.clear();
         }
+        requestCompaction();
     }
-}
\ No newline at end of file
+}
@@ -32,9 +32,64 @@ public class ConfigValidator {
             hasErrors = true;
         }
 
+        // Окно склейки активности
+        validatePositiveInt("detection.debounce-ticks", config.getInt("detection.debounce-ticks", 20), 0, 200);
+
+        // Распознавание АФК-машин
+        validatePositiveInt("detection.anti-afk-machine.still-look-moves", config.getInt("detection.anti-afk-machine.still-look-moves", 200), 32, 10000);
+        validatePositiveInt("detection.anti-afk-machine.clicker-samples", config.getInt("detection.anti-afk-machine.clicker-samples", 24), 8, 32);
+        validatePositiveInt("detection.anti-afk-machine.clicker-jitter-ticks", config.getInt("detection.anti-afk-machine.clicker-jitter-ticks", 1), 0, 20);
+
+        // Срок хранения логов
+        validatePositiveInt("settings.log-retention-days", config.getInt("settings.log-retention-days", 14), 0, 3650);
+
+        // Частота записи бэкапа
+        validatePositiveInt("settings.backup-flush-interval", config.getInt("settings.backup-flush-interval", 2), 1, 300);
+
+        // Дальность симуляции АФК игроков (минимум Paper — 2)
+        validatePositiveInt("freeze-simulation-distance", config.getInt("freeze-simulation-distance", 2), 2, 32);
+
+        // Дальности прорисовки АФК игроков
+        validatePositiveInt("afk-view-distance.view-distance", config.getInt("afk-view-distance.view-distance", 2), 2, 32);
+        validatePositiveInt("afk-view-distance.send-view-distance", config.getInt("afk-view-distance.send-view-distance", 2), 2, 32);
+        validatePositiveInt("afk-view-distance.restore-step", config.getInt("afk-view-distance.restore-step", 2), 0, 32);
+        validatePositiveInt("afk-view-distance.restore-interval", config.getInt("afk-view-distance.restore-interval", 10), 1, 200);
+
+        // Сводка сообщений об АФК
+        validatePositiveInt("broadcast.digest.window", config.getInt("broadcast.digest.window", 10), 1, 300);
+        validatePositiveInt("broadcast.digest.threshold", config.getInt("broadcast.digest.threshold", 5), 0, 1000);
+        validatePositiveInt("broadcast.digest.max-names", config.getInt("broadcast.digest.max-names", 10), 1, 100);
+
+        // Выгрузка пустого АФК мира
+        validatePositiveInt("afk-world.lifecycle.unload-after", config.getInt("afk-world.lifecycle.unload-after", 300), 0, 86400);
+
+        // Срок хранения аналитики
+        validatePositiveInt("analytics.retention-days", config.getInt("analytics.retention-days", 90), 1, 3650);
+
+        // Репликация между серверами
+        validatePositiveInt("network.heartbeat-interval", config.getInt("network.heartbeat-interval", 5), 1, 300);
+        validatePositiveInt("network.poll-interval", config.getInt("network.poll-interval", 1), 1, 60);
+        validatePositiveInt("network.resync-interval", config.getInt("network.resync-interval", 60), 10, 3600);
+        validatePositiveInt("network.file.max-size", config.getInt("network.file.max-size", 1024), 128, 1048576);
+
+        String transport = config.getString("network.transport", "file");
+        if (!"file".equalsIgnoreCase(transport) && !"loopback".equalsIgnoreCase(transport)) {
+            logger.warning("network.transport должен быть file или loopback (" + transport + "). Использую 'file'");
+            plugin.getConfig().set("network.transport", "file");
+            hasErrors = true;
+        }
+
         // Проверяем координаты спавна
         validateDouble("afk-world.spawn-location.y", config.getDouble("afk-world.spawn-location.y", 100), -64, 320);
 
+        // Режим АФК
+        String afkMode = config.getString("afk-mode", "world");
+        if (!"world".equalsIgnoreCase(afkMode) && !"in-place".equalsIgnoreCase(afkMode)) {
+            logger.warning("afk-mode должен быть world или in-place (" + afkMode + "). Использую 'world'");
+            plugin.getConfig().set("afk-mode", "world");
+            hasErrors = true;
+        }
+
         // Проверяем название мира
         String worldName = config.getString("afk-world.world-name", "world_afk");
         if (worldName == null || worldName.trim().isEmpty()) {
@@ -2,37 +2,76 @@ package com.honeymysteryworld.smartafk.utils;
 
 import com.honeymysteryworld.smartafk.SmartAFK;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Логгер плагина: консоль + файл logs/smartafk-ГГГГ-ММ-ДД.log.
+ *
+ * Строки для файла кладутся в lock-free буфер и записываются фоновым потоком
+ * пачками. При смене даты файл ротируется, старые логи сжимаются в .gz
+ * и удаляются после log-retention-days.
+ */
 public class Logger {
 
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final String FILE_PREFIX = "smartafk-";
+    private static final String FILE_SUFFIX = ".log";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
     private final SmartAFK plugin;
-    private final SimpleDateFormat dateFormat;
-    private boolean debugEnabled;
-    private File logFile;
+    private final File logsFolder;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LogRingBuffer<LogLine> buffer = new LogRingBuffer<>(BUFFER_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile boolean debugEnabled;
+    private volatile int retentionDays;
+
+    // Только поток записи
+    private Writer writer;
+    private LocalDate currentDay;
+    private long nextRotation;
 
     public Logger(SmartAFK plugin) {
         this.plugin = plugin;
-        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        this.debugEnabled = plugin.getConfig().getBoolean("settings.debug", false);
+        this.logsFolder = new File(plugin.getDataFolder(), "logs");
+        reload();
 
         // Создаём папку для логов
-        File logsFolder = new File(plugin.getDataFolder(), "logs");
         if (!logsFolder.exists()) {
             logsFolder.mkdirs();
         }
 
-        // Файл лога на сегодня
-        String today = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
-        this.logFile = new File(logsFolder, "smartafk-" + today + ".log");
+        this.writerThread = new Thread(this::runWriter, "SmartAFK-Log");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
     }
 
     public void reload() {
         this.debugEnabled = plugin.getConfig().getBoolean("settings.debug", false);
+        this.retentionDays = plugin.getConfig().getInt("settings.log-retention-days", 14);
     }
 
     public void info(String message) {
@@ -66,12 +105,195 @@ public class Logger {
         }
     }
 
+    /**
+     * Только кладём строку в буфер — никакого I/O в вызывающем потоке
+     */
     private void writeToFile(String level, String message) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(logFile, true))) {
-            String timestamp = dateFormat.format(new Date());
-            writer.println("[" + timestamp + "] [" + level + "] " + message);
-        } catch (Exception ignored) {
+        if (!running || !buffer.offer(new LogLine(System.currentTimeMillis(), level, message))) {
             // Не падаем если не можем записать лог
+            dropped.incrementAndGet();
+            return;
+        }
+
+        // Будим писателя заранее, чтобы буфер не переполнился
+        if (buffer.size() > BUFFER_CAPACITY / 2) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Остановить фоновый поток и дописать оставшиеся строки
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== Поток записи ====================
+
+    private void runWriter() {
+        compressAndPrune(LocalDate.now(zone));
+
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+
+        // Дописываем то, что успели положить до остановки
+        drain();
+        closeWriter();
+    }
+
+    /**
+     * Записать всё из буфера одной пачкой
+     *
+     * @return сколько строк записано
+     */
+    private int drain() {
+        int written = 0;
+
+        try {
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                write(new LogLine(System.currentTimeMillis(), "WARNING", "Пропущено строк лога: " + lost));
+            }
+
+            LogLine line;
+            while ((line = buffer.poll()) != null) {
+                write(line);
+                written++;
+            }
+
+            if (writer != null && (written > 0 || lost > 0)) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // Не падаем если не можем записать лог — попробуем открыть файл заново
+            closeWriter();
+        }
+
+        return written;
+    }
+
+    private void write(LogLine line) throws IOException {
+        if (writer == null || line.timestamp >= nextRotation) {
+            rotate(line.timestamp);
+        }
+
+        writer.write('[');
+        writer.write(TIME_FORMAT.format(Instant.ofEpochMilli(line.timestamp).atZone(zone)));
+        writer.write("] [");
+        writer.write(line.level);
+        writer.write("] ");
+        writer.write(line.message);
+        writer.write(System.lineSeparator());
+    }
+
+    private void rotate(long timestamp) throws IOException {
+        LocalDate day = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+        boolean dayChanged = currentDay != null && !day.equals(currentDay);
+
+        closeWriter();
+
+        if (!logsFolder.exists()) {
+            logsFolder.mkdirs();
+        }
+
+        // Файл лога на текущий день
+        File logFile = new File(logsFolder, FILE_PREFIX + DAY_FORMAT.format(day) + FILE_SUFFIX);
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8));
+        currentDay = day;
+        nextRotation = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+        if (dayChanged) {
+            compressAndPrune(day);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+            // Файл уже недоступен
+        }
+        writer = null;
+    }
+
+    /**
+     * Сжать логи прошлых дней и удалить те, что старше срока хранения
+     */
+    private void compressAndPrune(LocalDate today) {
+        File[] files = logsFolder.listFiles();
+        if (files == null) return;
+
+        int retention = retentionDays;
+
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(FILE_PREFIX)) continue;
+
+            LocalDate day = parseDay(name);
+            if (day == null || !day.isBefore(today)) continue;
+
+            try {
+                if (retention > 0 && day.isBefore(today.minusDays(retention))) {
+                    file.delete();
+                } else if (name.endsWith(FILE_SUFFIX)) {
+                    gzip(file);
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("Не удалось сжать лог " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static LocalDate parseDay(String name) {
+        int start = FILE_PREFIX.length();
+        int end = start + 10; // ГГГГ-ММ-ДД
+
+        if (name.length() < end) return null;
+
+        try {
+            return LocalDate.parse(name.substring(start, end), DAY_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static void gzip(File file) throws IOException {
+        File target = new File(file.getParentFile(), file.getName() + ".gz");
+        byte[] chunk = new byte[8192];
+
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(target))) {
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                out.write(chunk, 0, read);
+            }
+        }
+
+        file.delete();
+    }
+
+    private static final class LogLine {
+
+        private final long timestamp;
+        private final String level;
+        private final String message;
+
+        private LogLine(long timestamp, String level, String message) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.message = message;
         }
     }
-}
\ No newline at end of file
+}
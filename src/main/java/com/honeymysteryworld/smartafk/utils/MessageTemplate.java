@@ -0,0 +1,103 @@
+package com.honeymysteryworld.smartafk.utils;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сообщение из конфига, разобранное один раз на куски текста и плейсхолдеры.
+ *
+ * Цвета применяются при разборе, поэтому подставленные значения (ники)
+ * не раскрашиваются. Рендер — один проход StringBuilder без обращений к конфигу.
+ */
+public final class MessageTemplate {
+
+    private static final MessageTemplate EMPTY = new MessageTemplate(new String[]{""}, new int[0]);
+
+    // literals.length == slots.length + 1: текст, значение, текст, ...
+    private final String[] literals;
+    private final int[] slots;
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * @param raw          сообщение с &-кодами цветов
+     * @param placeholders имена плейсхолдеров без скобок; порядок задаёт порядок аргументов render
+     */
+    public static MessageTemplate compile(String raw, String... placeholders) {
+        if (raw == null || raw.isEmpty()) return EMPTY;
+
+        String text = ChatColor.translateAlternateColorCodes('&', raw);
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int close = c == '{' ? text.indexOf('}', i + 1) : -1;
+            int slot = close > 0 ? indexOf(placeholders, text.substring(i + 1, close)) : -1;
+
+            if (slot < 0) {
+                // Обычный текст или неизвестный плейсхолдер — оставляем как есть
+                current.append(c);
+                i++;
+                continue;
+            }
+
+            literals.add(current.toString());
+            current.setLength(0);
+            slots.add(slot);
+            i = close + 1;
+        }
+        literals.add(current.toString());
+
+        int[] slotArray = new int[slots.size()];
+        for (int j = 0; j < slotArray.length; j++) {
+            slotArray[j] = slots.get(j);
+        }
+
+        return new MessageTemplate(literals.toArray(new String[0]), slotArray);
+    }
+
+    private static int indexOf(String[] placeholders, String name) {
+        for (int i = 0; i < placeholders.length; i++) {
+            if (placeholders[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return literalLength == 0 && slots.length == 0;
+    }
+
+    /**
+     * @param values значения плейсхолдеров в порядке, заданном при compile
+     */
+    public String render(String... values) {
+        if (slots.length == 0) return literals[0];
+
+        int length = literalLength;
+        for (int slot : slots) {
+            length += values[slot].length();
+        }
+
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]).append(values[slots[i]]);
+        }
+        builder.append(literals[slots.length]);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,275 @@
+package com.honeymysteryworld.smartafk;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import org.bukkit.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тысячи игроков со сценариями активности на ручных часах:
+ * уход в АФК, предупреждения, кик и возвращение.
+ *
+ * Одна секунда симуляции — часы вперёд на секунду и 20 тиков планировщика,
+ * так что получасовой АФК проходит за секунды.
+ *
+ * В обычную сборку не входит — только mvn test -Psimulation.
+ */
+@Tag("simulation")
+class AfkSimulationTest {
+
+    private static final int PLAYERS = 3000;
+
+    // Игроки заходят равномерно в течение первой минуты
+    private static final int JOIN_SPREAD = 60;
+
+    private static final int AFK_TIMEOUT = 300;
+    private static final int KICK_TIMEOUT = 1800;
+
+    // Активные двигаются раз в 30 секунд, «вернувшиеся» просыпаются через 10 минут
+    private static final int ACTIVITY_PERIOD = 30;
+    private static final int RETURN_AFTER = 600;
+
+    // Как в AfkManager
+    private static final long[] KICK_WARNINGS = {120, 90, 60, 30, 10, 5};
+
+    // Бюджеты по времени — только с -Dsmartafk.timing=true на тихой машине:
+    // пауза GC или загруженный CI ломают их без всякой регрессии
+    private static final String TIMING_PROPERTY = "smartafk.timing";
+    private static final long AVERAGE_TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long WORST_SECOND_BUDGET = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private enum Pattern {
+        ACTIVE,
+        IDLE,
+        RETURNING
+    }
+
+    private ServerMock server;
+    private ManualClock clock;
+    private SmartAFK plugin;
+    private AfkManager afkManager;
+
+    @BeforeEach
+    void setUp() {
+        server = MockBukkit.mock();
+        clock = new ManualClock(1_700_000_000_000L);
+        plugin = MockBukkit.load(SmartAFK.class, clock);
+        afkManager = plugin.getAfkManager();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Test
+    void thousandsOfPlayersGoThroughAfkWarningKickAndReturn() {
+        PlayerMock[] players = new PlayerMock[PLAYERS];
+        Pattern[] patterns = new Pattern[PLAYERS];
+        int[] joinedAt = new int[PLAYERS];
+        int expectedPerPattern = PLAYERS / Pattern.values().length;
+
+        long totalNanos = 0;
+        long worstSecond = 0;
+        int measuredSeconds = 0;
+
+        int end = JOIN_SPREAD + KICK_TIMEOUT + 30;
+        for (int second = 0; second <= end; second++) {
+            long start = System.nanoTime();
+
+            if (second < JOIN_SPREAD) {
+                for (int i = second; i < PLAYERS; i += JOIN_SPREAD) {
+                    players[i] = server.addPlayer();
+                    patterns[i] = Pattern.values()[i % Pattern.values().length];
+                    joinedAt[i] = second;
+                }
+            }
+
+            for (int i = 0; i < PLAYERS; i++) {
+                if (players[i] != null && shouldAct(patterns[i], second - joinedAt[i])) {
+                    step(players[i]);
+                }
+            }
+
+            clock.advance(1000);
+            server.getScheduler().performTicks(20);
+
+            // Первая минута — заходы игроков и прогрев JIT
+            if (second >= JOIN_SPREAD) {
+                long cost = System.nanoTime() - start;
+                totalNanos += cost;
+                worstSecond = Math.max(worstSecond, cost);
+                measuredSeconds++;
+            }
+
+            if (second == JOIN_SPREAD + AFK_TIMEOUT + 5) {
+                // Все бездействующие ушли в АФК, активные — нет
+                for (int i = 0; i < PLAYERS; i++) {
+                    assertEquals(patterns[i] != Pattern.ACTIVE, afkManager.getAfkPlayer(players[i]).isAfk(),
+                            "АФК статус игрока " + i + " (" + patterns[i] + ")");
+                }
+                assertEquals(expectedPerPattern * 2, afkManager.getAfkCount());
+            }
+
+            if (second == JOIN_SPREAD + RETURN_AFTER + 5) {
+                // «Вернувшиеся» вышли из АФК первым же движением
+                for (int i = 0; i < PLAYERS; i++) {
+                    assertEquals(patterns[i] == Pattern.IDLE, afkManager.getAfkPlayer(players[i]).isAfk(),
+                            "АФК статус игрока " + i + " (" + patterns[i] + ")");
+                }
+                assertEquals(expectedPerPattern, afkManager.getAfkCount());
+            }
+        }
+
+        // Бездействующие кикнуты, остальные на сервере и не в АФК
+        for (int i = 0; i < PLAYERS; i++) {
+            assertEquals(patterns[i] != Pattern.IDLE, players[i].isOnline(),
+                    "Игрок " + i + " (" + patterns[i] + ") онлайн");
+        }
+        assertEquals(0, afkManager.getAfkCount());
+        assertEquals(PLAYERS - expectedPerPattern, server.getOnlinePlayers().size());
+
+        // Каждый кикнутый получил все предупреждения по порядку, остальные — ни одного
+        List<String> warnings = new ArrayList<>();
+        for (long seconds : KICK_WARNINGS) {
+            warnings.add(plugin.getMessages().kickWarning(seconds));
+        }
+        for (int i = 0; i < PLAYERS; i++) {
+            List<String> expected = patterns[i] == Pattern.IDLE ? warnings : new ArrayList<>();
+            assertEquals(expected, drainMessages(players[i]), "Сообщения игрока " + i + " (" + patterns[i] + ")");
+        }
+
+        // Чекер трогает игрока только по его дедлайнам: раз за afk-timeout,
+        // пока игрок активен, плюс уход в АФК, предупреждения и кик.
+        // Обход всех игроков каждую секунду дал бы PLAYERS * end проверок
+        long maxChecksPerPlayer = end / AFK_TIMEOUT + 1 + KICK_WARNINGS.length + 2;
+        long checked = afkManager.getCheckedPlayers();
+        assertTrue(checked <= PLAYERS * maxChecksPerPlayer,
+                "Проверок чекера " + checked + " при бюджете " + PLAYERS * maxChecksPerPlayer);
+
+        if (Boolean.getBoolean(TIMING_PROPERTY)) {
+            long averageTick = totalNanos / (measuredSeconds * 20L);
+            assertTrue(averageTick <= AVERAGE_TICK_BUDGET,
+                    "Средний тик " + averageTick + " нс при бюджете " + AVERAGE_TICK_BUDGET);
+            assertTrue(worstSecond <= WORST_SECOND_BUDGET,
+                    "Худшая секунда " + worstSecond + " нс при бюджете " + WORST_SECOND_BUDGET);
+        }
+    }
+
+    @Test
+    void afkCountAndIdleCheckDoNotDependOnPlayerCount() {
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            afkManager.setAfk(server.addPlayer(), true);
+        }
+        assertEquals(count, afkManager.getAfkCount());
+
+        // Ни один дедлайн не наступил: чекеру нечего делать при любом числе игроков
+        long now = clock.millis();
+        long checkedBefore = afkManager.getCheckedPlayers();
+        long idleCheck = averageNanos(10_000, () -> {
+            afkManager.processDeadlines(now);
+            return 1;
+        });
+        assertEquals(checkedBefore, afkManager.getCheckedPlayers(), "Пустой проход чекера проверял игроков");
+
+        if (Boolean.getBoolean(TIMING_PROPERTY)) {
+            long afkCount = averageNanos(100_000, afkManager::getAfkCount);
+            assertTrue(idleCheck <= 20_000, "Пустой проход чекера: " + idleCheck + " нс");
+            assertTrue(afkCount <= 1_000, "getAfkCount: " + afkCount + " нс");
+        }
+    }
+
+    @Test
+    void hoursOfAfkWithoutKickRunInVirtualTime() {
+        plugin.getConfig().set("kick-timeout", 0);
+        afkManager.reloadSettings();
+
+        List<PlayerMock> players = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            players.add(server.addPlayer());
+        }
+
+        // Восемь часов по минуте
+        long hours = 8;
+        for (int minute = 0; minute < hours * 60; minute++) {
+            clock.advance(TimeUnit.MINUTES.toMillis(1));
+            server.getScheduler().performTicks(20);
+        }
+
+        long expected = TimeUnit.HOURS.toMillis(hours) - TimeUnit.SECONDS.toMillis(AFK_TIMEOUT);
+        for (PlayerMock player : players) {
+            assertTrue(player.isOnline());
+            AfkPlayer afkPlayer = afkManager.getAfkPlayer(player);
+            assertTrue(afkPlayer.isAfk());
+            // Переход случается на ближайшей проверке после таймаута — до минуты позже
+            long duration = afkPlayer.getAfkDuration();
+            assertTrue(duration <= expected && duration > expected - TimeUnit.MINUTES.toMillis(1),
+                    "Длительность АФК " + duration + " мс");
+        }
+        assertEquals(players.size(), afkManager.getAfkCount());
+        assertFalse(afkManager.getAfkIndex().isEmpty());
+    }
+
+    private static boolean shouldAct(Pattern pattern, int sinceJoin) {
+        switch (pattern) {
+            case ACTIVE:
+                return sinceJoin > 0 && sinceJoin % ACTIVITY_PERIOD == 0;
+            case RETURNING:
+                return sinceJoin >= RETURN_AFTER && (sinceJoin - RETURN_AFTER) % ACTIVITY_PERIOD == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Шаг в соседний блок через событие движения. Живой игрок при этом
+     * поворачивает камеру — иначе шаги примет за АФК-машину
+     */
+    private static void step(PlayerMock player) {
+        Location to = player.getLocation().add(1, 0, 0);
+        to.setYaw(to.getYaw() + 15);
+        player.simulatePlayerMove(to);
+    }
+
+    private static List<String> drainMessages(PlayerMock player) {
+        List<String> messages = new ArrayList<>();
+        String message;
+        while ((message = player.nextMessage()) != null) {
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Среднее время вызова после прогрева такой же серией
+     */
+    private static long averageNanos(int calls, IntSupplier call) {
+        long sink = 0;
+        for (int i = 0; i < calls; i++) {
+            sink += call.getAsInt();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += call.getAsInt();
+        }
+        long average = (System.nanoTime() - start) / calls;
+
+        assertTrue(sink > 0);
+        return average;
+    }
+}